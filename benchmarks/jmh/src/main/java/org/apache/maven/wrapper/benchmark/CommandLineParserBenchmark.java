@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.wrapper.cli.CommandLineParser;
+import org.apache.maven.wrapper.cli.ParsedCommandLine;
+import org.apache.maven.wrapper.cli.SystemPropertiesCommandLineConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of the wrapper command line by {@link CommandLineParser}, configured
+ * as the wrapper does, for a varying number of arguments mixing system
+ * properties, Maven options the wrapper does not know and goals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CommandLineParserBenchmark {
+    @Param({ "3", "30", "300" })
+    public int arguments;
+
+    private String[] commandLine;
+
+    @Setup
+    public void setUp() {
+        commandLine = new String[arguments];
+
+        for (int i = 0; i < arguments; i++) {
+            switch (i % 3) {
+            case 0:
+                commandLine[i] = String.format("-Dproperty%d=value%d", i, i);
+                break;
+            case 1:
+                commandLine[i] = i % 2 == 0 ? "-o" : "--batch-mode";
+                break;
+            default:
+                commandLine[i] = "goal" + i;
+            }
+        }
+    }
+
+    @Benchmark
+    public ParsedCommandLine parse() {
+        CommandLineParser parser = new CommandLineParser();
+        new SystemPropertiesCommandLineConverter().configure(parser);
+        parser.option("o", "offline");
+        parser.allowUnknownOptions();
+        parser.allowMixedSubcommandsAndOptions();
+        return parser.parse(commandLine);
+    }
+}
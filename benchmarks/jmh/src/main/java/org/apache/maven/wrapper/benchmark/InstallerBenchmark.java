@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.wrapper.Installer;
+import org.apache.maven.wrapper.PathAssembler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Unpacking of a distribution by {@link Installer#unzip(File, File)}, for
+ * archives of a varying number and size of entries, and the stream copy it is
+ * built on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class InstallerBenchmark {
+    @Param({ "100", "1000" })
+    public int entries;
+
+    @Param({ "4096", "65536" })
+    public int entrySize;
+
+    private File workDir;
+    private File zip;
+    private File destination;
+    private byte[] content;
+    private Installer installer;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDir = File.createTempFile("installer-benchmark", "");
+        workDir.delete();
+        workDir.mkdirs();
+        zip = new File(workDir, "apache-maven-bench-bin.zip");
+        destination = new File(workDir, "dist");
+        content = new byte[entries * entrySize];
+        new Random(entries).nextBytes(content);
+        installer = new Installer(null, new PathAssembler(workDir));
+
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+
+        try {
+            out.putNextEntry(new ZipEntry("apache-maven-bench/lib/"));
+            out.closeEntry();
+
+            for (int i = 0; i < entries; i++) {
+                out.putNextEntry(new ZipEntry(String.format("apache-maven-bench/lib/entry-%d.jar", i)));
+                out.write(content, i * entrySize, entrySize);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDestination() {
+        deleteDir(destination);
+    }
+
+    @TearDown
+    public void tearDown() {
+        deleteDir(workDir);
+    }
+
+    @Benchmark
+    public void unzip() throws IOException {
+        installer.unzip(zip, destination);
+    }
+
+    @Benchmark
+    public void copyInputStream(final Blackhole blackhole) throws IOException {
+        installer.copyInputStream(new ByteArrayInputStream(content), new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(b);
+            }
+        });
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                deleteDir(file);
+            }
+        }
+
+        dir.delete();
+    }
+}
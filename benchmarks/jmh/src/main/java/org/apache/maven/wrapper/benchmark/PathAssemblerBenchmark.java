@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper.benchmark;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.wrapper.CachingPathAssembler;
+import org.apache.maven.wrapper.PathAssembler;
+import org.apache.maven.wrapper.PathAssembler.LocalDistribution;
+import org.apache.maven.wrapper.WrapperConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolution of the local locations of a distribution by
+ * {@link PathAssembler#getDistribution(WrapperConfiguration, URI)}, with a
+ * varying number of shared stores to look into, and of its caching variant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PathAssemblerBenchmark {
+    @Param({ "0", "1", "4" })
+    public int sharedStores;
+
+    private final URI distributionUrl = URI.create("https://repo1.maven.org/maven2/org/apache/maven/apache-maven/3.9.11/apache-maven-3.9.11-bin.zip");
+    private final PathAssembler pathAssembler = new PathAssembler(new File(System.getProperty("java.io.tmpdir"), "m2"));
+    private final PathAssembler cachingPathAssembler = new CachingPathAssembler(new File(System.getProperty("java.io.tmpdir"), "m2"));
+    private final WrapperConfiguration configuration = new WrapperConfiguration();
+
+    @Setup
+    public void setUp() {
+        List<File> stores = new ArrayList<File>();
+
+        for (int i = 0; i < sharedStores; i++) {
+            stores.add(new File(System.getProperty("java.io.tmpdir"), "shared-" + i));
+        }
+
+        configuration.setDistributionUris(Collections.singletonList(distributionUrl));
+        configuration.setDistributionBase(sharedStores == 0 ? PathAssembler.MAVEN_USER_HOME_STRING : PathAssembler.SHARED_STRING);
+        configuration.setSharedStorePaths(stores);
+    }
+
+    @Benchmark
+    public LocalDistribution getDistribution() {
+        return pathAssembler.getDistribution(configuration, distributionUrl);
+    }
+
+    @Benchmark
+    public LocalDistribution getCachedDistribution() {
+        return cachingPathAssembler.getDistribution(configuration, distributionUrl);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.wrapper.cli.CommandLineParser;
+import org.apache.maven.wrapper.cli.ParsedCommandLine;
+import org.apache.maven.wrapper.cli.SystemPropertiesCommandLineConverter;
+import org.apache.maven.wrapper.cli.SystemPropertiesScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extraction of the system properties and the offline flag from 50-argument CI
+ * command lines, by {@link SystemPropertiesScanner} and by
+ * {@link CommandLineParser} configured as the wrapper configures it when the
+ * scanner cannot handle the command line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SystemPropertiesScannerBenchmark {
+    private static final String[] RELEASE_COMMAND_LINE = {
+        "--batch-mode", "--errors", "--show-version", "--no-transfer-progress", "--fail-at-end",
+        "-T", "1C", "-U", "-Prelease,ci,!dev", "-pl", "core,api,cli,web", "-am",
+        "-s", ".ci/settings.xml", "-gs", ".ci/global-settings.xml", "-f", "pom.xml",
+        "-Dmaven.repo.local=/builds/cache/.m2/repository", "-Dmaven.test.failure.ignore=false",
+        "-DskipITs=false", "-Dsurefire.rerunFailingTestsCount=2", "-Djacoco.skip=false",
+        "-Dmaven.javadoc.skip=true", "-Dmaven.source.skip=false", "-Dgpg.skip=true",
+        "-Dproject.build.outputTimestamp=2016-01-01T00:00:00Z", "-Drevision=1.4.0",
+        "-Dchangelist=", "-Dsha1=-4d62298", "-Dorg.slf4j.simpleLogger.showDateTime=true",
+        "-Dorg.slf4j.simpleLogger.dateTimeFormat=HH:mm:ss,SSS", "-Dhttp.keepAlive=false",
+        "-Dmaven.wagon.http.pool=false", "-Dmaven.wagon.httpconnectionManager.ttlSeconds=120",
+        "-Dmaven.wagon.http.retryHandler.count=3", "-Dsonar.host.url=https://sonar.example.org",
+        "-Dsonar.projectKey=example", "-Dsonar.branch.name=main", "-DaltDeploymentRepository=ci::https://repo.example.org",
+        "-Dstyle.color=always", "-Denforcer.skip=false", "-Dlicense.skip=true", "-Dsurefire.printSummary=true",
+        "clean", "verify", "javadoc:jar", "source:jar", "install", "deploy"
+    };
+
+    private static final String[] OFFLINE_COMMAND_LINE;
+
+    static {
+        OFFLINE_COMMAND_LINE = RELEASE_COMMAND_LINE.clone();
+        OFFLINE_COMMAND_LINE[2] = "--offline";
+    }
+
+    @Param({ "release", "offline" })
+    public String commandLine;
+
+    private String[] args() {
+        return "offline".equals(commandLine) ? OFFLINE_COMMAND_LINE : RELEASE_COMMAND_LINE;
+    }
+
+    @Benchmark
+    public Map<String, String> scan() {
+        SystemPropertiesScanner scanner = new SystemPropertiesScanner("o", "offline");
+        scanner.scan(args());
+        return scanner.getSystemProperties();
+    }
+
+    @Benchmark
+    public Map<String, String> parse() {
+        CommandLineParser parser = new CommandLineParser();
+        SystemPropertiesCommandLineConverter converter = new SystemPropertiesCommandLineConverter();
+        converter.configure(parser);
+        parser.option("o", "offline");
+        parser.allowUnknownOptions();
+        parser.allowMixedSubcommandsAndOptions();
+        ParsedCommandLine parsedCommandLine = parser.parse(args());
+        return converter.convert(parsedCommandLine);
+    }
+}
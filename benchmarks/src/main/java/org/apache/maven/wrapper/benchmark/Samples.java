@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Durations, in milliseconds, measured for one scenario.
+ */
+public class Samples {
+    private final String name;
+    private final List<Long> values = new ArrayList<Long>();
+
+    public Samples(String name) {
+        this.name = name;
+    }
+
+    public synchronized void add(long value) {
+        values.add(value);
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the samples, or -1 if there are
+     * none.
+     */
+    public synchronized long percentile(double percent) {
+        if (values.isEmpty()) {
+            return -1;
+        }
+
+        List<Long> sorted = new ArrayList<Long>(values);
+        Collections.sort(sorted);
+        int rank = (int) Math.ceil(percent / 100 * sorted.size());
+
+        return sorted.get(Math.max(rank, 1) - 1);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-28s %5d %8d %8d %8d %8d", name, size(), percentile(50), percentile(90), percentile(99), percentile(100));
+    }
+
+    public static String header() {
+        return String.format("%-28s %5s %8s %8s %8s %8s", "scenario (ms)", "n", "p50", "p90", "p99", "max");
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.classworlds.launcher.Launcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Measures the startup of the wrapper end-to-end. Each run starts a JVM on the
+ * wrapper jar, which downloads a {@link SyntheticDistribution} from a local
+ * HTTP server if needed and hands over to the benchmark {@link Launcher}. Two
+ * durations are recorded for each run: until the hand-over, i.e. the time spent
+ * in the wrapper including the JVM startup, and until the process exited.
+ *
+ * The number of runs is set with the benchmark.iterations, the number of
+ * processes started at once by the concurrent scenarios with
+ * benchmark.concurrency, and the size of the distribution with
+ * benchmark.libFiles and benchmark.libFileSizeKb system properties.
+ */
+public class StartupBenchmark {
+    private static final String MAIN_CLASS = "org.apache.maven.wrapper.MavenWrapperMain";
+    private static final String DISTRIBUTION_PATH = "/maven/";
+
+    private final File wrapperJar;
+    private final File workDir;
+    private final int iterations;
+    private final int concurrency;
+    private final AtomicInteger homes = new AtomicInteger();
+    private final List<Samples> results = new ArrayList<Samples>();
+
+    public StartupBenchmark(File wrapperJar, File workDir, int iterations, int concurrency) {
+        this.wrapperJar = wrapperJar;
+        this.workDir = workDir;
+        this.iterations = iterations;
+        this.concurrency = concurrency;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: java -jar wrapper-maven-plugin-benchmarks.jar <wrapper jar>");
+            System.exit(2);
+        }
+
+        File workDir = File.createTempFile("maven-wrapper-benchmark", "");
+        workDir.delete();
+        workDir.mkdirs();
+
+        SyntheticDistribution distribution = new SyntheticDistribution(Integer.getInteger("benchmark.libFiles", 40),
+                Integer.getInteger("benchmark.libFileSizeKb", 64) * 1024);
+        DistributionServer server = new DistributionServer(distribution.getFileName(), distribution.toZip());
+
+        try {
+            StartupBenchmark benchmark = new StartupBenchmark(new File(args[0]), workDir, Integer.getInteger("benchmark.iterations", 10),
+                    Integer.getInteger("benchmark.concurrency", 4));
+            benchmark.setUp(server.getUrl());
+            benchmark.run();
+            benchmark.report(System.out);
+            System.out.println(String.format("%d distribution downloads served.", server.getRequests()));
+        } finally {
+            server.stop();
+            deleteDir(workDir);
+        }
+    }
+
+    /**
+     * Lays out a project using the wrapper, configured to download the
+     * distribution from the given URL.
+     */
+    void setUp(String distributionUrl) throws IOException {
+        File wrapperDir = new File(getProjectDir(), "maven");
+        wrapperDir.mkdirs();
+        copy(new FileInputStream(wrapperJar), new FileOutputStream(new File(wrapperDir, "maven-wrapper.jar")));
+
+        Properties properties = new Properties();
+        properties.setProperty("distributionUrl", distributionUrl);
+        OutputStream out = new FileOutputStream(new File(wrapperDir, "maven-wrapper.properties"));
+
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    void run() throws Exception {
+        Samples coldTotal = newSamples("cold install");
+        Samples coldHandoff = newSamples("cold install / handoff");
+
+        for (int i = 0; i < iterations; i++) {
+            File userHome = newUserHome();
+            runWrapper(userHome, false, coldTotal, coldHandoff);
+            deleteDir(userHome);
+        }
+
+        File warmHome = newUserHome();
+        runWrapper(warmHome, false, new Samples("warm-up"), new Samples("warm-up / handoff"));
+        Samples warmTotal = newSamples("warm start");
+        Samples warmHandoff = newSamples("warm start / handoff");
+        Samples unpackTotal = newSamples("always unpack");
+        Samples unpackHandoff = newSamples("always unpack / handoff");
+
+        for (int i = 0; i < iterations; i++) {
+            runWrapper(warmHome, false, warmTotal, warmHandoff);
+        }
+
+        for (int i = 0; i < iterations; i++) {
+            runWrapper(warmHome, true, unpackTotal, unpackHandoff);
+        }
+
+        Samples concurrentColdTotal = newSamples(String.format("concurrent cold x%d", concurrency));
+        Samples concurrentColdHandoff = newSamples(String.format("concurrent cold x%d / handoff", concurrency));
+        Samples concurrentWarmTotal = newSamples(String.format("concurrent warm x%d", concurrency));
+        Samples concurrentWarmHandoff = newSamples(String.format("concurrent warm x%d / handoff", concurrency));
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+
+        try {
+            for (int i = 0; i < iterations; i++) {
+                File userHome = newUserHome();
+                runConcurrently(executor, userHome, concurrentColdTotal, concurrentColdHandoff);
+                deleteDir(userHome);
+            }
+
+            for (int i = 0; i < iterations; i++) {
+                runConcurrently(executor, warmHome, concurrentWarmTotal, concurrentWarmHandoff);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    void report(Appendable out) throws IOException {
+        out.append(Samples.header()).append('\n');
+
+        for (Samples samples : results) {
+            out.append(samples.toString()).append('\n');
+        }
+    }
+
+    private void runConcurrently(ExecutorService executor, final File userHome, final Samples total, final Samples handoff) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> runs = new ArrayList<Future<Void>>();
+
+        for (int i = 0; i < concurrency; i++) {
+            runs.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    runWrapper(userHome, false, total, handoff);
+                    return null;
+                }
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<Void> run : runs) {
+            run.get();
+        }
+    }
+
+    private void runWrapper(File userHome, boolean alwaysUnpack, Samples total, Samples handoff) throws Exception {
+        ProcessBuilder processBuilder = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(), "-classpath",
+                new File(getProjectDir(), "maven/maven-wrapper.jar").getPath(), MAIN_CLASS, "validate");
+        processBuilder.directory(getProjectDir());
+        processBuilder.redirectErrorStream(true);
+        Map<String, String> environment = processBuilder.environment();
+
+        for (Iterator<String> names = environment.keySet().iterator(); names.hasNext();) {
+            String name = names.next();
+
+            if (name.startsWith("MAVEN_")) {
+                names.remove();
+            }
+        }
+
+        environment.put("MAVEN_USER_HOME", userHome.getAbsolutePath());
+
+        if (alwaysUnpack) {
+            environment.put("MAVEN_WRAPPER_ALWAYS_UNPACK", "true");
+        }
+
+        long launched = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        Process process = processBuilder.start();
+        StringBuilder output = new StringBuilder();
+        long handedOver = -1;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append('\n');
+
+                if (line.startsWith(Launcher.HANDOFF_PREFIX)) {
+                    handedOver = Long.parseLong(line.substring(Launcher.HANDOFF_PREFIX.length()).trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        int exitCode = process.waitFor();
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1000000L;
+
+        if (exitCode != 0 || handedOver < 0) {
+            throw new IllegalStateException(String.format("The wrapper exited with code %d without reaching the launcher:%n%s", exitCode, output));
+        }
+
+        total.add(elapsedMillis);
+        handoff.add(handedOver - launched);
+    }
+
+    private Samples newSamples(String name) {
+        Samples samples = new Samples(name);
+        results.add(samples);
+        return samples;
+    }
+
+    private File newUserHome() {
+        return new File(workDir, "home-" + homes.incrementAndGet());
+    }
+
+    private File getProjectDir() {
+        return new File(workDir, "project");
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                deleteDir(file);
+            }
+        }
+
+        dir.delete();
+    }
+
+    /**
+     * Serves the distribution archive over HTTP on the loopback interface.
+     */
+    static class DistributionServer implements HttpHandler {
+        private final String fileName;
+        private final byte[] content;
+        private final AtomicInteger requests = new AtomicInteger();
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        DistributionServer(String fileName, byte[] content) throws IOException {
+            this.fileName = fileName;
+            this.content = content;
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+            server.createContext(DISTRIBUTION_PATH, this);
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        String getUrl() {
+            return String.format("http://127.0.0.1:%d%s%s", server.getAddress().getPort(), DISTRIBUTION_PATH, fileName);
+        }
+
+        int getRequests() {
+            return requests.get();
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!exchange.getRequestURI().getPath().equals(DISTRIBUTION_PATH + fileName)) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+
+                requests.incrementAndGet();
+                exchange.sendResponseHeaders(200, content.length);
+                OutputStream body = exchange.getResponseBody();
+                body.write(content);
+                body.close();
+            } finally {
+                exchange.close();
+            }
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdown();
+        }
+    }
+}
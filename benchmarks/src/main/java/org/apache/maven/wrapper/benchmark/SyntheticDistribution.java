@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.codehaus.plexus.classworlds.launcher.Launcher;
+
+/**
+ * Builds, in memory, a Maven distribution archive with the layout the wrapper
+ * expects, whose launcher is the benchmark {@link Launcher} and whose lib
+ * directory is filled with incompressible jars of the given size.
+ */
+public class SyntheticDistribution {
+    public static final String NAME = "apache-maven-bench";
+
+    private final int libFiles;
+    private final int libFileSize;
+
+    public SyntheticDistribution(int libFiles, int libFileSize) {
+        this.libFiles = libFiles;
+        this.libFileSize = libFileSize;
+    }
+
+    public String getFileName() {
+        return NAME + "-bin.zip";
+    }
+
+    public byte[] toZip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+
+        try {
+            // like the Apache Maven archives, which list their directories first
+            for (String dir : new String[] { "", "bin/", "boot/", "lib/" }) {
+                putEntry(zip, NAME + "/" + dir, new byte[0]);
+            }
+
+            putEntry(zip, NAME + "/bin/mvn", "#!/bin/sh\n".getBytes("UTF-8"));
+            putEntry(zip, NAME + "/bin/m2.conf", "main is org.apache.maven.cli.MavenCli from plexus.core\n".getBytes("UTF-8"));
+            putEntry(zip, NAME + "/boot/plexus-classworlds-bench.jar", launcherJar());
+
+            // seeded, so that every run installs the same bytes
+            Random random = new Random(libFiles);
+
+            for (int i = 0; i < libFiles; i++) {
+                byte[] content = new byte[libFileSize];
+                random.nextBytes(content);
+                putEntry(zip, String.format("%s/lib/filler-%d.jar", NAME, i), content);
+            }
+        } finally {
+            zip.close();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] launcherJar() throws IOException {
+        String classFile = Launcher.class.getName().replace('.', '/') + ".class";
+        InputStream in = SyntheticDistribution.class.getClassLoader().getResourceAsStream(classFile);
+
+        if (in == null) {
+            throw new IOException(String.format("Could not find %s on the class path.", classFile));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JarOutputStream jar = new JarOutputStream(bytes);
+
+        try {
+            putEntry(jar, classFile, readFully(in));
+        } finally {
+            jar.close();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
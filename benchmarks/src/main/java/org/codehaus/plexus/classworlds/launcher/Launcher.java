@@ -0,0 +1,30 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.classworlds.launcher;
+
+/**
+ * Stands in for the classworlds launcher of the synthetic distribution. It
+ * prints the time at which the wrapper handed over to it and exits right away,
+ * so that only the wrapper is measured.
+ */
+public class Launcher {
+    public static final String HANDOFF_PREFIX = "maven-wrapper-benchmark handoff ";
+
+    public static void main(String[] args) {
+        System.out.println(HANDOFF_PREFIX + System.currentTimeMillis());
+        System.exit(0);
+    }
+}
@@ -149,8 +149,105 @@ for /F "usebackq delims=" %%a in ("%MAVEN_PROJECTBASEDIR%\.mvn\jvm.config") do s
 SET MAVEN_JAVA_EXE="%JAVA_HOME%\bin\java.exe"
 set WRAPPER_JAR="%MAVEN_PROJECTBASEDIR%\maven\maven-wrapper.jar"
 set WRAPPER_LAUNCHER=org.apache.maven.wrapper.MavenWrapperMain
-%MAVEN_JAVA_EXE% %JVM_CONFIG_MAVEN_PROPS% %MAVEN_OPTS% %MAVEN_DEBUG_OPTS% -classpath %WRAPPER_JAR% %WRAPPER_LAUNCHER% %MAVEN_CMD_LINE_ARGS%
-
+for %%i in (%WRAPPER_JAR%) do set "WRAPPER_PROPERTIES=%%~dpni.properties"
+
+@REM JVM option profiles: MAVEN_WRAPPER_JVM_PROFILE or the jvmProfile wrapper
+@REM property selects the "fast-start" options for short builds or the
+@REM "throughput" options for long ones. The options go before MAVEN_OPTS, which
+@REM takes precedence, and the collector and heap sizing are left out when
+@REM MAVEN_OPTS, .mvn\jvm.config, JAVA_TOOL_OPTIONS or JDK_JAVA_OPTIONS already
+@REM set them. Daemon builds get no profile, as the daemon would inherit the
+@REM options of the short-lived client JVM.
+set "WRAPPER_JVM_PROFILE=%MAVEN_WRAPPER_JVM_PROFILE%"
+if "%WRAPPER_JVM_PROFILE%" == "" if exist "%WRAPPER_PROPERTIES%" for /F "usebackq tokens=1,* delims==" %%a in ("%WRAPPER_PROPERTIES%") do if "%%a" == "jvmProfile" set "WRAPPER_JVM_PROFILE=%%b"
+if "%MAVEN_WRAPPER_DAEMON%" == "true" set WRAPPER_JVM_PROFILE=
+set WRAPPER_JVM_OPTS=
+set WRAPPER_JVM_GC=
+set WRAPPER_JVM_HEAP=
+if "%WRAPPER_JVM_PROFILE%" == "fast-start" (
+  set "WRAPPER_JVM_OPTS=-XX:TieredStopAtLevel=1 -Xshare:auto"
+  set "WRAPPER_JVM_GC=-XX:+UseSerialGC"
+  set "WRAPPER_JVM_HEAP=-Xms64m"
+)
+if "%WRAPPER_JVM_PROFILE%" == "throughput" (
+  set "WRAPPER_JVM_OPTS=-XX:+TieredCompilation -XX:ReservedCodeCacheSize=256m"
+  set "WRAPPER_JVM_GC=-XX:+UseParallelGC"
+  set "WRAPPER_JVM_HEAP=-Xms512m"
+)
+@setlocal EnableDelayedExpansion
+set "WRAPPER_ARGS=!JVM_CONFIG_MAVEN_PROPS! !MAVEN_OPTS! !JAVA_TOOL_OPTIONS! !JDK_JAVA_OPTIONS!"
+for %%g in (UseSerialGC UseParallelGC UseG1GC UseZGC UseShenandoahGC UseConcMarkSweepGC UseEpsilonGC) do (
+  if not "!WRAPPER_ARGS:%%g=!" == "!WRAPPER_ARGS!" set WRAPPER_JVM_GC=
+)
+for %%h in (-Xms -Xmx RAMPercentage RAMFraction InitialHeapSize MaxHeapSize) do (
+  if not "!WRAPPER_ARGS:%%h=!" == "!WRAPPER_ARGS!" set WRAPPER_JVM_HEAP=
+)
+@endlocal & set "WRAPPER_JVM_PROFILE_OPTS=%WRAPPER_JVM_OPTS% %WRAPPER_JVM_GC% %WRAPPER_JVM_HEAP%"
+
+@REM Fast path: when the distribution is installed and nothing needs the wrapper,
+@REM runs its bin\mvn.cmd directly instead of bootstrapping it through the wrapper
+@REM jar. Downloads, installs and the wrapper's own settings still go through the
+@REM jar. Set MAVEN_WRAPPER_FAST_PATH=false to disable it.
+if "%MAVEN_WRAPPER_FAST_PATH%" == "false" goto endFastPath
+if "%MAVEN_WRAPPER_ALWAYS_UNPACK%" == "true" goto endFastPath
+if "%MAVEN_WRAPPER_ALWAYS_DOWNLOAD%" == "true" goto endFastPath
+if "%MAVEN_WRAPPER_DAEMON%" == "true" goto endFastPath
+
+@setlocal EnableDelayedExpansion
+set "WRAPPER_ARGS=!MAVEN_OPTS! !MAVEN_CMD_LINE_ARGS!"
+set WRAPPER_FAST_PATH=true
+if not "!WRAPPER_ARGS:maven.wrapper.=!" == "!WRAPPER_ARGS!" set WRAPPER_FAST_PATH=false
+if not "!WRAPPER_ARGS:maven.user.home=!" == "!WRAPPER_ARGS!" set WRAPPER_FAST_PATH=false
+@endlocal & set WRAPPER_FAST_PATH=%WRAPPER_FAST_PATH%
+if "%WRAPPER_FAST_PATH%" == "false" goto endFastPath
+
+set "WRAPPER_USER_HOME=%MAVEN_USER_HOME%"
+if "%WRAPPER_USER_HOME%" == "" set "WRAPPER_USER_HOME=%USERPROFILE%\.m2"
+for %%i in (%WRAPPER_JAR%) do set "WRAPPER_DIR=%%~dpi"
+@REM system properties the wrapper adds from its maven.properties files
+if exist "%WRAPPER_USER_HOME%\maven.properties" goto endFastPath
+if exist "%WRAPPER_DIR%..\maven.properties" goto endFastPath
+
+set WRAPPER_DIST_URLS=
+set WRAPPER_DIST_BASE=
+set WRAPPER_DIST_PATH=wrapper/dists
+if not exist "%WRAPPER_PROPERTIES%" goto endFastPath
+for /F "usebackq tokens=1,* delims==" %%a in ("%WRAPPER_PROPERTIES%") do (
+  if "%%a" == "distributionUrl" set "WRAPPER_DIST_URLS=%%b"
+  if "%%a" == "distributionBase" set "WRAPPER_DIST_BASE=%%b"
+  if "%%a" == "distributionPath" set "WRAPPER_DIST_PATH=%%b"
+)
+if "%WRAPPER_DIST_URLS%" == "" goto endFastPath
+set "WRAPPER_DIST_URLS=%WRAPPER_DIST_URLS:\:=:%"
+
+set "WRAPPER_DISTS=%WRAPPER_USER_HOME%"
+if "%WRAPPER_DIST_BASE%" == "PROJECT" set "WRAPPER_DISTS=%CD%"
+set "WRAPPER_DISTS=%WRAPPER_DISTS%\%WRAPPER_DIST_PATH:/=\%"
+
+set WRAPPER_MAVEN_HOME=
+for /D %%d in ("%WRAPPER_DISTS%\*") do for /D %%e in ("%%~d\*") do if exist "%%~e\maven-wrapper.stamp" call :matchInstallStamp "%%~e"
+if "%WRAPPER_MAVEN_HOME%" == "" goto endFastPath
+
+@REM keeps the distribution recently used for the eviction
+type NUL > "%WRAPPER_STAMP_DIR%\.touch" 2>NUL
+del "%WRAPPER_STAMP_DIR%\.touch" 2>NUL
+
+@REM the mavenrc files and the pause/terminate settings are handled by this script,
+@REM and bin\mvn.cmd would run the Maven of M2_HOME instead
+@setlocal
+set M2_HOME=
+set MAVEN_SKIP_RC=on
+set MAVEN_BATCH_PAUSE=
+set MAVEN_TERMINATE_CMD=
+set "MAVEN_OPTS=%WRAPPER_JVM_PROFILE_OPTS% %MAVEN_OPTS%"
+call "%WRAPPER_MAVEN_HOME%\bin\mvn.cmd" %MAVEN_CMD_LINE_ARGS%
+@endlocal
+goto checkErrorLevel
+
+:endFastPath
+%MAVEN_JAVA_EXE% %WRAPPER_JVM_PROFILE_OPTS% %JVM_CONFIG_MAVEN_PROPS% %MAVEN_OPTS% %MAVEN_DEBUG_OPTS% -classpath %WRAPPER_JAR% %WRAPPER_LAUNCHER% %MAVEN_CMD_LINE_ARGS%
+
+:checkErrorLevel
 if ERRORLEVEL 1 goto error
 goto end
 
@@ -172,3 +269,24 @@ if "%MAVEN_BATCH_PAUSE%" == "on" pause
 if "%MAVEN_TERMINATE_CMD%" == "on" exit %ERROR_CODE%
 
 exit /B %ERROR_CODE%
+
+@REM sets WRAPPER_MAVEN_HOME when the given directory holds a complete install of
+@REM one of the configured distribution URLs
+:matchInstallStamp
+if not "%WRAPPER_MAVEN_HOME%" == "" goto :eof
+set WRAPPER_STAMP_URL=
+set WRAPPER_STAMP_HOME=
+for /F "usebackq tokens=1,* delims==" %%a in ("%~1\maven-wrapper.stamp") do (
+  if "%%a" == "distributionUrl" set "WRAPPER_STAMP_URL=%%b"
+  if "%%a" == "mavenHome" set "WRAPPER_STAMP_HOME=%%b"
+)
+if "%WRAPPER_STAMP_URL%" == "" goto :eof
+if "%WRAPPER_STAMP_HOME%" == "" goto :eof
+set "WRAPPER_STAMP_URL=%WRAPPER_STAMP_URL:\:=:%"
+set "WRAPPER_URL_LIST=,%WRAPPER_DIST_URLS%,"
+call set "WRAPPER_URL_REST=%%WRAPPER_URL_LIST:,%WRAPPER_STAMP_URL%,=%%"
+if "%WRAPPER_URL_REST%" == "%WRAPPER_URL_LIST%" goto :eof
+if not exist "%~1\%WRAPPER_STAMP_HOME:/=\%\bin\mvn.cmd" goto :eof
+set "WRAPPER_STAMP_DIR=%~1"
+set "WRAPPER_MAVEN_HOME=%~1\%WRAPPER_STAMP_HOME:/=\%"
+goto :eof
@@ -16,10 +16,11 @@
 package org.apache.maven.wrapper;
 
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
+import java.util.Map;
 
 /**
  * @author Hans Dockter
@@ -27,33 +28,204 @@ import java.net.URLClassLoader;
 public class BootstrapMainStarter {
     private static final String ERROR_TEMPLATE = "Could not locate the Maven launcher JAR in Maven distribution '%s'.";
 
+    static final String BOOT_PATH = "boot";
+
+    private static final String LAUNCHER_JAR_PREFIX = "plexus-classworlds-";
+
+    private static final String LAUNCHER_CLASS = "org.codehaus.plexus.classworlds.launcher.Launcher";
+
+    /**
+     * The classworlds classes the launcher needs to set up the Maven class realms,
+     * in the order it loads them.
+     */
+    private static final String[] PRELOADED_CLASSES = {
+        "org.codehaus.plexus.classworlds.realm.ClassRealm",
+        "org.codehaus.plexus.classworlds.ClassWorld",
+        "org.codehaus.plexus.classworlds.launcher.ConfigurationHandler",
+        "org.codehaus.plexus.classworlds.launcher.Configurator",
+        "org.codehaus.plexus.classworlds.realm.FilteredClassRealm",
+        "org.codehaus.plexus.classworlds.launcher.ConfigurationParser",
+        "org.codehaus.plexus.classworlds.strategy.StrategyFactory",
+        "org.codehaus.plexus.classworlds.strategy.SelfFirstStrategy"
+    };
+
+    private static final String CLASS_WORLD_CLASS = "org.codehaus.plexus.classworlds.ClassWorld";
+
+    /**
+     * The classworlds classes needed to set up the Maven class realm directly,
+     * in the order they are loaded.
+     */
+    private static final String[] DIRECT_PRELOADED_CLASSES = {
+        "org.codehaus.plexus.classworlds.realm.ClassRealm",
+        CLASS_WORLD_CLASS,
+        "org.codehaus.plexus.classworlds.strategy.StrategyFactory",
+        "org.codehaus.plexus.classworlds.strategy.SelfFirstStrategy"
+    };
+
+    /**
+     * The exit code of the classworlds launcher when Maven fails to start.
+     */
+    private static final int LAUNCH_FAILURE_EXIT_CODE = 100;
+
+    private final WrapperMetrics metrics;
+
+    private final MavenDaemonClient daemonClient;
+
+    private final boolean directLaunch;
+
+    public BootstrapMainStarter() {
+        this(new WrapperMetrics());
+    }
+
+    public BootstrapMainStarter(WrapperMetrics metrics) {
+        this(metrics, null);
+    }
+
+    public BootstrapMainStarter(WrapperMetrics metrics, MavenDaemonClient daemonClient) {
+        this(metrics, daemonClient, false);
+    }
+
+    /**
+     * @param directLaunch
+     *            whether to build the Maven class realm from the cached
+     *            bin/m2.conf of the install, when it is supported, instead of
+     *            having the classworlds launcher parse it
+     */
+    public BootstrapMainStarter(WrapperMetrics metrics, MavenDaemonClient daemonClient, boolean directLaunch) {
+        this.metrics = metrics;
+        this.daemonClient = daemonClient;
+        this.directLaunch = directLaunch;
+    }
+
     public void start(String[] args, File mavenHome) throws Exception {
+        if (daemonClient != null) {
+            Integer exitCode = daemonClient.execute(args, mavenHome);
+
+            if (exitCode != null) {
+                metrics.writeReportIfRequested();
+                System.exit(exitCode);
+            }
+        }
+
+        long bootstrapStart = System.nanoTime();
+        WrapperEvent event = WrapperEvents.begin(WrapperEvents.Type.BOOTSTRAP_CLASS_LOAD, mavenHome.getAbsolutePath());
         File mavenJar = findLauncherJar(mavenHome);
-        ClassLoader contextClassLoader = createUrlClassLoader(mavenJar);
+        System.setProperty("maven.home", mavenHome.getAbsolutePath());
+
+        LaunchConfiguration launchConfiguration = directLaunch ? LaunchConfiguration.load(mavenHome) : null;
+        LauncherClassLoader contextClassLoader = createLauncherClassLoader(mavenJar);
+        contextClassLoader.preload(launchConfiguration != null ? DIRECT_PRELOADED_CLASSES : PRELOADED_CLASSES);
         Thread.currentThread().setContextClassLoader(contextClassLoader);
-        Class<?> mainClass = contextClassLoader.loadClass("org.codehaus.plexus.classworlds.launcher.Launcher");
 
-        System.setProperty("maven.home", mavenHome.getAbsolutePath());
+        if (launchConfiguration != null) {
+            launchDirectly(args, launchConfiguration, contextClassLoader, bootstrapStart, event);
+            return;
+        }
+
         System.setProperty("classworlds.conf", new File(mavenHome, "/bin/m2.conf").getAbsolutePath());
 
+        Class<?> mainClass = contextClassLoader.loadClass(LAUNCHER_CLASS);
         Method mainMethod = mainClass.getMethod("main", String[].class);
+        metrics.addElapsed("bootstrap.classLoadMillis", bootstrapStart);
+        event.commit();
+
+        // the launcher exits the JVM once Maven is done, so report before handing over
+        metrics.writeReportIfRequested();
         mainMethod.invoke(null, new Object[] { args });
     }
 
-    private ClassLoader createUrlClassLoader(File mavenJar) throws MalformedURLException {
+    /**
+     * Builds the class world the classworlds launcher would build from
+     * m2.conf and runs Maven in it, exiting the JVM as the launcher does.
+     */
+    private void launchDirectly(String[] args, LaunchConfiguration launchConfiguration, ClassLoader launcherClassLoader, long bootstrapStart,
+                                WrapperEvent event) throws Exception {
+        for (Map.Entry<String, String> entry : launchConfiguration.getDefaults().entrySet()) {
+            System.setProperty(entry.getKey(), entry.getValue());
+        }
+
+        Class<?> worldClass = launcherClassLoader.loadClass(CLASS_WORLD_CLASS);
+        Object world = worldClass.newInstance();
+        ClassLoader realm = (ClassLoader) worldClass.getMethod("newRealm", String.class, ClassLoader.class)
+                .invoke(world, launchConfiguration.getRealm(), launcherClassLoader);
+        Method addUrl = realm.getClass().getMethod("addURL", URL.class);
+
+        for (URL url : launchConfiguration.getUrls()) {
+            addUrl.invoke(realm, url);
+        }
+
+        Class<?> mainClass = realm.loadClass(launchConfiguration.getMainClass());
+        Thread.currentThread().setContextClassLoader(realm);
+
+        Method mainMethod;
+        boolean enhanced = true;
+
+        try {
+            mainMethod = mainClass.getMethod("main", String[].class, worldClass);
+        } catch (NoSuchMethodException e) {
+            mainMethod = mainClass.getMethod("main", String[].class);
+            enhanced = false;
+        }
+
+        metrics.addElapsed("bootstrap.classLoadMillis", bootstrapStart);
+        event.commit();
+        metrics.writeReportIfRequested();
+
+        int exitCode = 0;
+
+        try {
+            Object result = enhanced ? mainMethod.invoke(null, args, world) : mainMethod.invoke(null, new Object[] { args });
+
+            if (result instanceof Integer) {
+                exitCode = (Integer) result;
+            }
+        } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+            exitCode = LAUNCH_FAILURE_EXIT_CODE;
+        }
+
+        System.exit(exitCode);
+    }
+
+    private LauncherClassLoader createLauncherClassLoader(File mavenJar) throws MalformedURLException {
         URL[] urls = { mavenJar.toURI().toURL() };
         ClassLoader parentClassLoader = ClassLoader.getSystemClassLoader().getParent();
-        URLClassLoader contextClassLoader = new URLClassLoader(urls, parentClassLoader);
 
-        return contextClassLoader;
+        return new LauncherClassLoader(urls, parentClassLoader);
     }
 
-    private File findLauncherJar(File mavenHome) {
-        for (File file : new File(mavenHome, "boot").listFiles()) {
-            if (file.getName().matches("plexus-classworlds-.*\\.jar")) {
-                return file;
+    /**
+     * Returns the launcher jar of the given Maven home. Its boot directory is
+     * listed rather than its install stamp read, as the stamp of a shared
+     * install lists all of its files.
+     */
+    static File findLauncherJar(File mavenHome) {
+        File launcherJar = scanLauncherJar(mavenHome);
+
+        if (launcherJar == null) {
+            throw new RuntimeException(String.format(ERROR_TEMPLATE, mavenHome));
+        }
+
+        return launcherJar;
+    }
+
+    /**
+     * Lists the boot directory of the given Maven home for the launcher jar.
+     * Returns null if there is none.
+     */
+    static File scanLauncherJar(File mavenHome) {
+        File[] files = new File(mavenHome, BOOT_PATH).listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+
+                if (name.startsWith(LAUNCHER_JAR_PREFIX) && name.endsWith(".jar")) {
+                    return file;
+                }
             }
         }
-        throw new RuntimeException(String.format(ERROR_TEMPLATE, mavenHome));
+
+        return null;
     }
 }
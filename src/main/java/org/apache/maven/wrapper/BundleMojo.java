@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.codehaus.plexus.util.IOUtil;
+
+@Mojo(name = "bundle", requiresProject = true)
+/**
+ * Generates a self-contained Maven Command Line Wrapper, which embeds the
+ * Maven distribution archive next to the wrapper jar and pins its SHA-256
+ * checksum, so that the wrapper installs Maven without any network access.
+ */
+public class BundleMojo extends MavenWrapperMojo {
+
+    static final String DIST_FILENAME_TEMPLATE = "apache-maven-%s-bin.zip";
+
+    @Override
+    protected void completeWrapperProperties(Properties props, File wrapperSupportFolder) throws MojoExecutionException, IOException {
+        String archiveName = String.format(DIST_FILENAME_TEMPLATE, getMavenVersion());
+        File archive = new File(wrapperSupportFolder, archiveName);
+
+        if (!isBundled(archive, wrapperSupportFolder)) {
+            downloadDistribution(props.getProperty(DISTRIBUTION_URL_PROPERTY).split(","), archive);
+        }
+
+        deleteOtherDistributions(wrapperSupportFolder, archiveName);
+
+        // resolved against the folder of the properties file by the wrapper
+        props.put(DISTRIBUTION_URL_PROPERTY, archiveName);
+        props.put(VERIFY_DOWNLOAD_PROPERTY, Boolean.TRUE.toString());
+        props.put(CHECKSUM_ALGORITHM_PROPERTY, Checksum.SHA256.toString());
+        props.put(WrapperExecutor.DISTRIBUTION_CHECKSUM_PROPERTY, generate(Checksum.SHA256, archive));
+    }
+
+    /**
+     * Tells whether the archive is the one whose SHA-256 checksum is pinned by
+     * the wrapper properties of a previous bundle, so that it is not
+     * downloaded again. Any other archive, e.g. an incomplete or modified one,
+     * is downloaded again.
+     */
+    private boolean isBundled(File archive, File wrapperSupportFolder) throws IOException {
+        File propertiesFile = new File(wrapperSupportFolder, WRAPPER_PROPERTIES_FILE_NAME);
+
+        if (!archive.isFile() || !propertiesFile.isFile()) {
+            return false;
+        }
+
+        Properties bundled = new Properties();
+        InputStream in = new FileInputStream(propertiesFile);
+
+        try {
+            bundled.load(in);
+        } finally {
+            IOUtil.close(in);
+        }
+
+        String pinnedChecksum = bundled.getProperty(WrapperExecutor.DISTRIBUTION_CHECKSUM_PROPERTY);
+
+        if (pinnedChecksum != null && pinnedChecksum.trim().equalsIgnoreCase(generate(Checksum.SHA256, archive))) {
+            return true;
+        }
+
+        getLog().warn(String.format("%s does not match the pinned checksum, downloading it again", archive));
+        return false;
+    }
+
+    private void downloadDistribution(String[] distributionUrls, File archive) throws MojoExecutionException {
+        DefaultDownloader downloader = new DefaultDownloader("mvnw", getPlugin().getVersion());
+        File tmpArchive = new File(archive.getParentFile(), archive.getName() + ".part");
+        Exception failure = null;
+
+        for (String distributionUrl : distributionUrls) {
+            URI distributionUri = URI.create(distributionUrl.trim());
+            tmpArchive.delete();
+
+            try {
+                getLog().info("Downloading " + distributionUri);
+                downloader.download(distributionUri, tmpArchive);
+
+                if (getVerifyDownload()) {
+                    verifyDistribution(downloader, distributionUri, tmpArchive);
+                }
+
+                if (!tmpArchive.renameTo(archive) && !(archive.delete() && tmpArchive.renameTo(archive))) {
+                    throw new IOException(String.format("Could not move the downloaded distribution to %s", archive));
+                }
+
+                return;
+            } catch (Exception e) {
+                getLog().warn(String.format("Maven distribution '%s' failed: %s", distributionUri, e.getMessage()));
+
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                tmpArchive.delete();
+            }
+        }
+
+        throw new MojoExecutionException("Could not download the Maven distribution to bundle.", failure);
+    }
+
+    private void verifyDistribution(Downloader downloader, URI distributionUri, File archive) throws Exception {
+        Checksum checksum = Checksum.fromAlias(getChecksumAlgorithm());
+
+        if (checksum == null) {
+            throw new MojoExecutionException(String.format("Unsupported checksum algorithm: %s", getChecksumAlgorithm()));
+        }
+
+        String extension = getChecksumExtension() != null ? getChecksumExtension() : checksum.getDefaultExtension();
+        URI checksumUri = URI.create(distributionUri + "." + extension);
+        File checksumFile = new File(archive.getParentFile(), archive.getName() + "." + extension);
+        checksumFile.delete();
+
+        try {
+            downloader.download(checksumUri, checksumFile);
+
+            if (!generate(checksum, archive).equals(readChecksum(checksumFile))) {
+                throw new IOException(String.format("Maven distribution '%s' failed to verify against '%s'.", distributionUri, checksumUri));
+            }
+        } finally {
+            checksumFile.delete();
+        }
+    }
+
+    private static String readChecksum(File checksumFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(checksumFile), "UTF-8"));
+
+        try {
+            String line = reader.readLine();
+            return line == null ? "" : line.trim().split("\\s+")[0].toLowerCase(Locale.US);
+        } finally {
+            IOUtil.close(reader);
+        }
+    }
+
+    private static String generate(Checksum checksum, File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+
+        try {
+            return checksum.generate(in);
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Removes the archives bundled for other Maven versions.
+     */
+    private void deleteOtherDistributions(File wrapperSupportFolder, String archiveName) {
+        String prefix = DIST_FILENAME_TEMPLATE.substring(0, DIST_FILENAME_TEMPLATE.indexOf('%'));
+        String suffix = DIST_FILENAME_TEMPLATE.substring(DIST_FILENAME_TEMPLATE.lastIndexOf('s') + 1);
+        File[] files = wrapperSupportFolder.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+
+            if (!name.equals(archiveName) && name.startsWith(prefix) && name.endsWith(suffix) && file.isFile() && file.delete()) {
+                getLog().info("Deleted previously bundled distribution " + file.getAbsolutePath());
+            }
+        }
+    }
+}
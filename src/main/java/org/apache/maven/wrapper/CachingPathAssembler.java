@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Path assembler remembering the locations it resolved, for tools resolving
+ * the distributions of many wrapper configurations, e.g. of all the modules of
+ * a repository. The URL hashes are computed once per URL and the locations once
+ * per distribution base, path and URL. Local archives are not remembered, as
+ * their locations depend on their modification time.
+ */
+public class CachingPathAssembler extends PathAssembler {
+    private final ConcurrentMap<URI, String> rootDirNames = new ConcurrentHashMap<URI, String>();
+
+    private final ConcurrentMap<Key, LocalDistribution> distributions = new ConcurrentHashMap<Key, LocalDistribution>();
+
+    public CachingPathAssembler(File mavenUserHome) {
+        super(mavenUserHome);
+    }
+
+    @Override
+    public LocalDistribution getDistribution(WrapperConfiguration configuration, URI distributionUrl) {
+        if (FILE_SCHEME.equals(distributionUrl.getScheme())) {
+            return super.getDistribution(configuration, distributionUrl);
+        }
+
+        Key key = new Key(configuration, distributionUrl);
+        LocalDistribution distribution = distributions.get(key);
+
+        if (distribution == null) {
+            distribution = super.getDistribution(configuration, distributionUrl);
+            LocalDistribution cached = distributions.putIfAbsent(key, distribution);
+
+            if (cached != null) {
+                distribution = cached;
+            }
+        }
+
+        return distribution;
+    }
+
+    @Override
+    protected String rootDirName(URI distributionUrl) {
+        if (FILE_SCHEME.equals(distributionUrl.getScheme())) {
+            return super.rootDirName(distributionUrl);
+        }
+
+        String rootDirName = rootDirNames.get(distributionUrl);
+
+        if (rootDirName == null) {
+            rootDirName = super.rootDirName(distributionUrl);
+            rootDirNames.put(distributionUrl, rootDirName);
+        }
+
+        return rootDirName;
+    }
+
+    /**
+     * The configuration settings the locations of a distribution depend on.
+     */
+    private static final class Key {
+        private final String distributionBase;
+        private final String distributionPath;
+        private final String zipBase;
+        private final String zipPath;
+        private final List<File> sharedStorePaths;
+        private final String distributionChecksum;
+        private final URI distributionUrl;
+
+        Key(WrapperConfiguration configuration, URI distributionUrl) {
+            this.distributionBase = configuration.getDistributionBase();
+            this.distributionPath = configuration.getDistributionPath();
+            this.zipBase = configuration.getZipBase();
+            this.zipPath = configuration.getZipPath();
+            this.sharedStorePaths = new ArrayList<File>(configuration.getSharedStorePaths());
+            this.distributionChecksum = configuration.getDistributionChecksum();
+            this.distributionUrl = distributionUrl;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+
+            return distributionBase.equals(other.distributionBase) && distributionPath.equals(other.distributionPath)
+                    && zipBase.equals(other.zipBase) && zipPath.equals(other.zipPath)
+                    && sharedStorePaths.equals(other.sharedStorePaths)
+                    && (distributionChecksum == null ? other.distributionChecksum == null : distributionChecksum.equals(other.distributionChecksum))
+                    && distributionUrl.equals(other.distributionUrl);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = distributionBase.hashCode();
+            result = 31 * result + distributionPath.hashCode();
+            result = 31 * result + zipBase.hashCode();
+            result = 31 * result + zipPath.hashCode();
+            result = 31 * result + sharedStorePaths.hashCode();
+            result = 31 * result + (distributionChecksum == null ? 0 : distributionChecksum.hashCode());
+            result = 31 * result + distributionUrl.hashCode();
+            return result;
+        }
+    }
+}
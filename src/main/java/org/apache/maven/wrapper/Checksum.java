@@ -42,6 +42,12 @@ public enum Checksum {
         protected MessageDigest getDigest() throws NoSuchAlgorithmException {
             return MessageDigest.getInstance("MD5");
         }
+    },
+    SHA256("sha256", "SHA-256") {
+        @Override
+        protected MessageDigest getDigest() throws NoSuchAlgorithmException {
+            return MessageDigest.getInstance("SHA-256");
+        }
     };
 
     private static final Map<String, Checksum> CHECKSUM_BY_ALIAS = new HashMap<String, Checksum>();
@@ -73,7 +79,13 @@ public enum Checksum {
     }
 
     public boolean verify(InputStream data, String checksum) {
-        return checksum.equals(generate(data));
+        WrapperEvent event = WrapperEvents.begin(WrapperEvents.Type.CHECKSUM_VERIFY, name());
+
+        try {
+            return checksum.equals(generate(data));
+        } finally {
+            event.commit();
+        }
     }
 
     public String generate(InputStream data) {
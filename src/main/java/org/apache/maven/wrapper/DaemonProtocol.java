@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Framing of the messages exchanged between the wrapper and a
+ * {@link MavenDaemon}. Every message is a type byte, a length and as many
+ * bytes of payload.
+ */
+final class DaemonProtocol {
+    // client to daemon
+    static final byte TOKEN = 'T';
+    static final byte WORKING_DIRECTORY = 'D';
+    static final byte ARGUMENT = 'A';
+    static final byte PROPERTY = 'P';
+    static final byte START = 'G';
+    static final byte STDIN = 'I';
+    static final byte STDIN_CLOSED = 'C';
+
+    // daemon to client
+    static final byte ACCEPTED = 'S';
+    static final byte REJECTED = 'R';
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'E';
+    static final byte EXIT = 'X';
+
+    static final String CHARSET = "UTF-8";
+    static final char PROPERTY_SEPARATOR = '\0';
+
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private DaemonProtocol() {
+    }
+
+    static void write(DataOutputStream out, byte type, byte[] data, int offset, int length) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(length);
+            out.write(data, offset, length);
+            out.flush();
+        }
+    }
+
+    static void write(DataOutputStream out, byte type, String text) throws IOException {
+        byte[] data = text.getBytes(CHARSET);
+        write(out, type, data, 0, data.length);
+    }
+
+    static void writeInt(DataOutputStream out, byte type, int value) throws IOException {
+        byte[] data = { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+        write(out, type, data, 0, data.length);
+    }
+
+    static Frame read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int length = in.readInt();
+
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException(String.format("Invalid daemon message length %d", length));
+        }
+
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return new Frame(type, data);
+    }
+
+    static class Frame {
+        final byte type;
+        final byte[] data;
+
+        Frame(byte type, byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+
+        String text() throws IOException {
+            return new String(data, CHARSET);
+        }
+
+        int intValue() throws IOException {
+            if (data.length != 4) {
+                throw new IOException(String.format("Invalid daemon message length %d for an integer", data.length));
+            }
+
+            return ((data[0] & 0xff) << 24) | ((data[1] & 0xff) << 16) | ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+        }
+    }
+
+    /**
+     * Sends everything written to it as messages of the given type.
+     */
+    static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            if (length > 0) {
+                DaemonProtocol.write(out, type, data, offset, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * File through which a running {@link MavenDaemon} advertises its port and the
+ * token clients have to present. Only the owner may read it.
+ */
+final class DaemonRegistry {
+    private static final String REGISTRY_EXTENSION = ".properties";
+    private static final String PORT_KEY = "port";
+    private static final String TOKEN_KEY = "token";
+
+    private final int port;
+    private final String token;
+
+    DaemonRegistry(int port, String token) {
+        this.port = port;
+        this.token = token;
+    }
+
+    static File registryFile(File registryDir, String key) {
+        return new File(registryDir, key + REGISTRY_EXTENSION);
+    }
+
+    /**
+     * Returns the log of the daemon registered in the given file.
+     */
+    static File logFile(File registryFile) {
+        return sibling(registryFile, ".log");
+    }
+
+    /**
+     * Returns the marker of a daemon being started for the given file.
+     */
+    static File spawnMarker(File registryFile) {
+        return sibling(registryFile, ".spawning");
+    }
+
+    private static File sibling(File registryFile, String extension) {
+        String name = registryFile.getName();
+
+        if (name.endsWith(REGISTRY_EXTENSION)) {
+            name = name.substring(0, name.length() - REGISTRY_EXTENSION.length());
+        }
+
+        return new File(registryFile.getParentFile(), name + extension);
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * Returns the registered daemon, or null if there is none.
+     */
+    static DaemonRegistry read(File registryFile) {
+        if (!registryFile.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+
+        try {
+            InputStream in = new FileInputStream(registryFile);
+
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+
+            return new DaemonRegistry(Integer.parseInt(properties.getProperty(PORT_KEY)), properties.getProperty(TOKEN_KEY));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    void write(File registryFile) throws IOException {
+        File tmpFile = new File(registryFile.getParentFile(), registryFile.getName() + ".part");
+        registryFile.getParentFile().mkdirs();
+        tmpFile.delete();
+        tmpFile.createNewFile();
+
+        // restrict the token to the owner before writing it
+        tmpFile.setReadable(false, false);
+        tmpFile.setReadable(true, true);
+        tmpFile.setWritable(false, false);
+        tmpFile.setWritable(true, true);
+
+        Properties properties = new Properties();
+        properties.setProperty(PORT_KEY, String.valueOf(port));
+        properties.setProperty(TOKEN_KEY, token);
+        OutputStream out = new FileOutputStream(tmpFile);
+
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+
+        if (!tmpFile.renameTo(registryFile) && !(registryFile.delete() && tmpFile.renameTo(registryFile))) {
+            throw new IOException(String.format("Could not write daemon registry %s", registryFile.getAbsolutePath()));
+        }
+    }
+}
@@ -20,10 +20,12 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.Authenticator;
+import java.net.InetAddress;
 import java.net.PasswordAuthentication;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
@@ -38,10 +40,16 @@ public class DefaultDownloader implements Downloader {
     private static final int BUFFER_SIZE = 10000;
     private final String applicationName;
     private final String applicationVersion;
+    private final WrapperMetrics metrics;
 
     public DefaultDownloader(String applicationName, String applicationVersion) {
+        this(applicationName, applicationVersion, new WrapperMetrics());
+    }
+
+    public DefaultDownloader(String applicationName, String applicationVersion, WrapperMetrics metrics) {
         this.applicationName = applicationName;
         this.applicationVersion = applicationVersion;
+        this.metrics = metrics;
         configureProxyAuthentication();
     }
 
@@ -64,20 +72,39 @@ public class DefaultDownloader implements Downloader {
         WritableByteChannel out = null;
         URLConnection conn;
         ReadableByteChannel in = null;
+        WrapperEvent event = WrapperEvents.begin(WrapperEvents.Type.DOWNLOAD, address.toString());
+        long totalRead = 0;
 	
         try {	    
             URL url = address.toURL();
+            resolveHost(url);
             out = Channels.newChannel(new FileOutputStream(destination));
             conn = url.openConnection();
             String userAgentValue = calculateUserAgent();
             conn.setRequestProperty("User-Agent", userAgentValue);
+
+            long connectStart = System.nanoTime();
+            conn.connect();
+            metrics.addElapsed("download.connectMillis", connectStart);
+
+            long firstByteStart = System.nanoTime();
             in = Channels.newChannel(conn.getInputStream());
             int numRead;
             long progressCounter = 0;
+            long transferStart = 0;
 
 	    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
 	    	    
 	    while ((numRead = in.read(buffer)) >= 0 || buffer.position() > 0) {
+                if (transferStart == 0) {
+                    metrics.addElapsed("download.firstByteMillis", firstByteStart);
+                    transferStart = System.nanoTime();
+                }
+
+                if (numRead > 0) {
+                    totalRead += numRead;
+                }
+
                 progressCounter += numRead;
 		buffer.flip();
 		
@@ -89,7 +116,13 @@ public class DefaultDownloader implements Downloader {
                 out.write(buffer);
 		buffer.clear();
             }
+
+            if (transferStart != 0) {
+                recordTransfer(totalRead, transferStart);
+            }
         } finally {
+            event.setBytes(totalRead);
+            event.commit();
             System.out.println("");
 
 	    if (in != null) {
@@ -102,6 +135,32 @@ public class DefaultDownloader implements Downloader {
         }
     }
 
+    /**
+     * Resolves the host up front when metrics are requested so that name
+     * resolution is reported separately from the connection time. The JVM
+     * caches the lookup, so the connection does not resolve the host again.
+     */
+    private void resolveHost(URL url) {
+        if (!metrics.isEnabled() || url.getHost() == null || url.getHost().length() == 0) {
+            return;
+        }
+
+        long dnsStart = System.nanoTime();
+
+        try {
+            InetAddress.getAllByName(url.getHost());
+        } catch (UnknownHostException e) {
+            // a proxy may still be able to resolve it, let the connection decide
+        }
+
+        metrics.addElapsed("download.dnsMillis", dnsStart);
+    }
+
+    private void recordTransfer(long bytes, long transferStart) {
+        metrics.addElapsed("download.transferMillis", transferStart);
+        metrics.add("download.bytes", bytes);
+    }
+
     private String calculateUserAgent() {
         String javaVendor = System.getProperty("java.vendor");
         String javaVersion = System.getProperty("java.version");
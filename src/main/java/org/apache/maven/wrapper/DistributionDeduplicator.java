@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Deque;
+import java.util.LinkedList;
+
+/**
+ * Replaces the jars of installed distributions by hard links to a blob store
+ * keyed by their SHA-256 digest, so that the jars shared by several Maven
+ * versions are stored, and cached by the operating system, only once. Only the
+ * jars below the {@code lib} and {@code boot} directories are linked, other
+ * files such as {@code conf/settings.xml} or {@code bin/m2.conf} are commonly
+ * edited in place, which must not change the other distributions.
+ *
+ * Hard links require Java 7, on older runtimes deduplication is skipped.
+ */
+public class DistributionDeduplicator {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(DistributionDeduplicator.class.getName());
+
+    private static final String LIB_DIR = "lib";
+    private static final String BOOT_DIR = "boot";
+
+    private static final Method TO_PATH;
+    private static final Method CREATE_LINK;
+    private static final Method IS_SAME_FILE;
+    private static final Method GET_ATTRIBUTE;
+    private static final Object NO_LINK_OPTIONS;
+
+    static {
+        Method toPath = null;
+        Method createLink = null;
+        Method isSameFile = null;
+        Method getAttribute = null;
+        Object noLinkOptions = null;
+
+        try {
+            Class<?> pathClass = Class.forName("java.nio.file.Path");
+            Class<?> filesClass = Class.forName("java.nio.file.Files");
+            toPath = File.class.getMethod("toPath");
+            createLink = filesClass.getMethod("createLink", pathClass, pathClass);
+            isSameFile = filesClass.getMethod("isSameFile", pathClass, pathClass);
+            Class<?> linkOptionClass = Class.forName("java.nio.file.LinkOption");
+            noLinkOptions = Array.newInstance(linkOptionClass, 0);
+            getAttribute = filesClass.getMethod("getAttribute", pathClass, String.class, noLinkOptions.getClass());
+        } catch (Exception e) {
+            toPath = null;
+            createLink = null;
+            isSameFile = null;
+            getAttribute = null;
+            noLinkOptions = null;
+        }
+
+        TO_PATH = toPath;
+        CREATE_LINK = createLink;
+        IS_SAME_FILE = isSameFile;
+        GET_ATTRIBUTE = getAttribute;
+        NO_LINK_OPTIONS = noLinkOptions;
+    }
+
+    private final File blobStore;
+    private int linkedFiles;
+    private long savedBytes;
+
+    public DistributionDeduplicator(File blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    public static boolean isSupported() {
+        return CREATE_LINK != null;
+    }
+
+    public int getLinkedFiles() {
+        return linkedFiles;
+    }
+
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    /**
+     * Deduplicates the jars below the given directory against the blob store.
+     */
+    public void dedupe(File dir) throws IOException {
+        if (!isSupported()) {
+            LOG.info("Hard links are not supported by this Java runtime, skipping deduplication.");
+            return;
+        }
+
+        Deque<File> pending = new LinkedList<File>();
+        pending.push(dir);
+
+        while (!pending.isEmpty()) {
+            File[] files = pending.pop().listFiles();
+
+            if (files == null) {
+                continue;
+            }
+
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    pending.push(file);
+                } else if (isCandidate(dir, file)) {
+                    dedupeFile(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the blobs no longer linked from any distribution, e.g. after
+     * distributions were evicted. Link counts are only available on Unix file
+     * systems, elsewhere the blob store is left as is.
+     */
+    public static void pruneBlobs(File blobStore) {
+        File[] prefixDirs = blobStore.listFiles();
+
+        if (!isSupported() || prefixDirs == null) {
+            return;
+        }
+
+        for (File prefixDir : prefixDirs) {
+            File[] blobs = prefixDir.listFiles();
+
+            if (blobs == null) {
+                continue;
+            }
+
+            for (File blob : blobs) {
+                Integer links = linkCount(blob);
+
+                if (links == null) {
+                    return;
+                }
+
+                if (links.intValue() == 1) {
+                    blob.delete();
+                }
+            }
+        }
+    }
+
+    private static Integer linkCount(File file) {
+        try {
+            return (Integer) GET_ATTRIBUTE.invoke(null, TO_PATH.invoke(file), "unix:nlink", NO_LINK_OPTIONS);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Only non-empty jars below a {@code lib} or {@code boot} directory of a
+     * distribution are shared between distributions.
+     */
+    private boolean isCandidate(File root, File file) {
+        if (!file.getName().endsWith(".jar") || !file.isFile() || file.length() == 0) {
+            return false;
+        }
+
+        for (File dir = file.getParentFile(); dir != null && !dir.equals(root); dir = dir.getParentFile()) {
+            if (LIB_DIR.equals(dir.getName()) || BOOT_DIR.equals(dir.getName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void dedupeFile(File file) throws IOException {
+        String digest = sha256(file);
+        File blob = new File(new File(blobStore, digest.substring(0, 2)), digest);
+
+        if (!blob.exists()) {
+            blob.getParentFile().mkdirs();
+            link(blob, file);
+            return;
+        }
+
+        // a hard link shares the permissions of the blob
+        if (isSameFile(blob, file) || blob.canExecute() != file.canExecute() || blob.length() != file.length()) {
+            return;
+        }
+
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".dedupe");
+        tmpFile.delete();
+
+        if (!link(tmpFile, blob)) {
+            return;
+        }
+
+        long length = file.length();
+
+        if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file))) {
+            tmpFile.delete();
+            throw new IOException(String.format("Could not replace %s by a link to %s", file.getAbsolutePath(), blob.getAbsolutePath()));
+        }
+
+        linkedFiles++;
+        savedBytes += length;
+    }
+
+    private boolean link(File link, File existing) throws IOException {
+        try {
+            CREATE_LINK.invoke(null, TO_PATH.invoke(link), TO_PATH.invoke(existing));
+            return true;
+        } catch (InvocationTargetException e) {
+            // another install may have created the link, or the file system does not support links
+            LOG.fine(String.format("Could not link %s to %s: %s", link.getAbsolutePath(), existing.getAbsolutePath(), e.getCause()));
+            return false;
+        } catch (IllegalAccessException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private boolean isSameFile(File first, File second) throws IOException {
+        try {
+            return (Boolean) IS_SAME_FILE.invoke(null, TO_PATH.invoke(first), TO_PATH.invoke(second));
+        } catch (InvocationTargetException e) {
+            return false;
+        } catch (IllegalAccessException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private static String sha256(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+
+        try {
+            return Checksum.SHA256.generate(in);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Removes the least recently used distributions, and their zips, once they are
+ * older than the configured age or exceed the configured total size. The
+ * last-modified time of a distribution directory is its last access, as the
+ * Installer touches it whenever the distribution is used.
+ *
+ * A distribution is first renamed under its install lock, so that concurrent
+ * builds either see it complete or not at all, and only then deleted.
+ *
+ * The configuration snapshots of projects which were not built again within
+ * the age limit, or within {@link #MAX_SNAPSHOT_AGE_MILLIS} without one, are
+ * deleted as well; a project built again just gets a new snapshot.
+ */
+public class DistributionEvictor implements Runnable {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(DistributionEvictor.class.getName());
+
+    static final String EVICTING_SUFFIX = ".evicting";
+
+    /**
+     * Distributions used more recently than this are never evicted to honour
+     * the size cap, as a running build may still be reading them.
+     */
+    static final long MIN_IDLE_MILLIS = 60L * 60L * 1000L;
+
+    /**
+     * Age of the configuration snapshots beyond which they are deleted when no
+     * age limit is configured.
+     */
+    static final long MAX_SNAPSHOT_AGE_MILLIS = 30L * 24L * 60L * 60L * 1000L;
+
+    private static final long RUN_INTERVAL_MILLIS = 60L * 60L * 1000L;
+    private static final String LAST_RUN_MARKER = ".last-eviction";
+
+    private final File distributionsDir;
+    private final File zipsDir;
+    private final File blobStore;
+    private final File snapshotsDir;
+    private final long maxAgeMillis;
+    private final long maxSizeBytes;
+    private int evictedCount;
+
+    public DistributionEvictor(PathAssembler pathAssembler, WrapperConfiguration configuration) {
+        this(pathAssembler.getDistributionsDir(configuration),
+                pathAssembler.getZipsDir(configuration),
+                pathAssembler.getBlobStoreDir(configuration),
+                pathAssembler.getSnapshotsDir(),
+                configuration.getMaxDistributionAgeDays() * 24L * 60L * 60L * 1000L,
+                configuration.getMaxDistributionsSizeMb() * 1024L * 1024L);
+    }
+
+    public DistributionEvictor(File distributionsDir, File zipsDir, File blobStore, File snapshotsDir, long maxAgeMillis, long maxSizeBytes) {
+        this.distributionsDir = distributionsDir;
+        this.zipsDir = zipsDir;
+        this.blobStore = blobStore;
+        this.snapshotsDir = snapshotsDir;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxAgeMillis > 0 || maxSizeBytes > 0;
+    }
+
+    public int getEvictedCount() {
+        return evictedCount;
+    }
+
+    /**
+     * Runs the eviction on a low priority daemon thread, at most once an hour.
+     * Maven exits the JVM when the build ends, which may interrupt the eviction
+     * at any point; partially deleted distributions are cleaned up by the next
+     * run.
+     */
+    public void startInBackground() {
+        if (!isEnabled() || !isDue()) {
+            return;
+        }
+
+        Thread thread = new Thread(this, "maven-wrapper-evictor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private boolean isDue() {
+        File marker = new File(distributionsDir, LAST_RUN_MARKER);
+        long now = System.currentTimeMillis();
+
+        if (marker.exists() && now - marker.lastModified() < RUN_INTERVAL_MILLIS) {
+            return false;
+        }
+
+        try {
+            distributionsDir.mkdirs();
+            marker.createNewFile();
+            marker.setLastModified(now);
+        } catch (IOException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public void run() {
+        try {
+            evict();
+        } catch (Exception e) {
+            LOG.warning(String.format("Could not evict distributions from %s: %s", distributionsDir.getAbsolutePath(), e.getMessage()));
+        }
+    }
+
+    public void evict() throws IOException {
+        deleteLeftovers(distributionsDir);
+
+        if (!zipsDir.getAbsoluteFile().equals(distributionsDir.getAbsoluteFile())) {
+            deleteLeftovers(zipsDir);
+        }
+
+        List<Entry> entries = listEntries();
+        long now = System.currentTimeMillis();
+        long totalSize = 0;
+
+        if (maxSizeBytes > 0) {
+            for (Entry entry : entries) {
+                totalSize += entry.size();
+            }
+        }
+
+        for (Entry entry : entries) {
+            long idle = now - entry.lastAccess;
+            boolean expired = maxAgeMillis > 0 && idle > maxAgeMillis;
+            boolean oversized = maxSizeBytes > 0 && totalSize > maxSizeBytes && idle > MIN_IDLE_MILLIS;
+
+            if ((expired || oversized) && evict(entry)) {
+                totalSize -= entry.size;
+            }
+        }
+
+        if (evictedCount > 0 && blobStore != null) {
+            DistributionDeduplicator.pruneBlobs(blobStore);
+        }
+
+        if (snapshotsDir != null) {
+            deleteSnapshots(now - (maxAgeMillis > 0 ? maxAgeMillis : MAX_SNAPSHOT_AGE_MILLIS));
+        }
+    }
+
+    /**
+     * Deletes the snapshots, and leftovers of interrupted writes, last written
+     * before the given time.
+     */
+    private void deleteSnapshots(long writtenBefore) {
+        File[] snapshots = snapshotsDir.listFiles();
+
+        if (snapshots == null) {
+            return;
+        }
+
+        for (File snapshot : snapshots) {
+            if (snapshot.isFile() && snapshot.lastModified() < writtenBefore) {
+                snapshot.delete();
+            }
+        }
+    }
+
+    /**
+     * Lists the distribution directories, i.e. {@code <distName>/<hash>}, least
+     * recently used first.
+     */
+    private List<Entry> listEntries() {
+        List<Entry> entries = new ArrayList<Entry>();
+
+        for (File distDir : listDistributionDirs(distributionsDir)) {
+            entries.add(new Entry(distDir, zipDir(distDir.getParentFile(), distDir)));
+        }
+
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry first, Entry second) {
+                return first.lastAccess < second.lastAccess ? -1 : first.lastAccess == second.lastAccess ? 0 : 1;
+            }
+        });
+
+        return entries;
+    }
+
+    /**
+     * Deletes the leftovers of interrupted evictions.
+     */
+    private static void deleteLeftovers(File rootDir) {
+        File[] distNames = rootDir.listFiles();
+
+        if (distNames == null) {
+            return;
+        }
+
+        for (File distName : distNames) {
+            File[] distDirs = distName.listFiles();
+
+            if (distDirs == null) {
+                continue;
+            }
+
+            for (File distDir : distDirs) {
+                if (distDir.isDirectory() && distDir.getName().endsWith(EVICTING_SUFFIX)) {
+                    Installer.deleteDir(distDir);
+                }
+            }
+        }
+    }
+
+    private static List<File> listDistributionDirs(File rootDir) {
+        List<File> distDirs = new ArrayList<File>();
+        File[] distNames = rootDir.listFiles();
+
+        if (distNames == null) {
+            return distDirs;
+        }
+
+        for (File distName : distNames) {
+            File[] children = distName.listFiles();
+
+            if (children == null) {
+                continue;
+            }
+
+            for (File distDir : children) {
+                if (distDir.isDirectory() && !distDir.getName().endsWith(EVICTING_SUFFIX)) {
+                    distDirs.add(distDir);
+                }
+            }
+        }
+
+        return distDirs;
+    }
+
+    private File zipDir(File distName, File distDir) {
+        File zipDir = new File(new File(zipsDir, distName.getName()), distDir.getName());
+        return zipDir.getAbsoluteFile().equals(distDir.getAbsoluteFile()) ? null : zipDir;
+    }
+
+    private boolean evict(Entry entry) throws IOException {
+        InstallLock lock = InstallLock.tryAcquire(entry.distDir);
+
+        if (lock == null) {
+            return false;
+        }
+
+        File evictingDir = new File(entry.distDir.getParentFile(), entry.distDir.getName() + EVICTING_SUFFIX);
+        File evictingZipDir = null;
+
+        try {
+            // the distribution was used since it was listed
+            if (entry.distDir.lastModified() != entry.lastAccess || !entry.distDir.renameTo(evictingDir)) {
+                return false;
+            }
+
+            if (entry.zipDir != null && entry.zipDir.exists()) {
+                evictingZipDir = new File(entry.zipDir.getParentFile(), entry.zipDir.getName() + EVICTING_SUFFIX);
+
+                if (!entry.zipDir.renameTo(evictingZipDir)) {
+                    evictingZipDir = entry.zipDir;
+                }
+            }
+        } finally {
+            lock.release();
+        }
+
+        LOG.info(String.format("Evicting least recently used distribution %s", entry.distDir.getAbsolutePath()));
+        Installer.deleteDir(evictingDir);
+
+        if (evictingZipDir != null) {
+            Installer.deleteDir(evictingZipDir);
+        }
+
+        evictedCount++;
+        return true;
+    }
+
+    private static long sizeOf(File dir) {
+        long size = 0;
+        Deque<File> pending = new LinkedList<File>();
+        pending.push(dir);
+
+        while (!pending.isEmpty()) {
+            File[] files = pending.pop().listFiles();
+
+            if (files == null) {
+                continue;
+            }
+
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    pending.push(file);
+                } else {
+                    size += file.length();
+                }
+            }
+        }
+
+        return size;
+    }
+
+    private static class Entry {
+        private final File distDir;
+        private final File zipDir;
+        private final long lastAccess;
+        private long size = -1;
+
+        Entry(File distDir, File zipDir) {
+            this.distDir = distDir;
+            this.zipDir = zipDir;
+            this.lastAccess = distDir.lastModified();
+        }
+
+        long size() {
+            if (size < 0) {
+                size = sizeOf(distDir) + (zipDir == null ? 0 : sizeOf(zipDir));
+            }
+
+            return size;
+        }
+    }
+}
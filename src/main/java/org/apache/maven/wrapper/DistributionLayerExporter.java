@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.maven.wrapper.PathAssembler.LocalDistribution;
+
+/**
+ * Installs a distribution into a directory laid out as a Maven user home, to be
+ * copied into a container image layer. The install is stamped like any other,
+ * so the wrapper finds it without any install work, while the downloaded
+ * archive and the install locks are left out of the layer and everything is
+ * made readable by the users the containers may run as.
+ */
+public class DistributionLayerExporter {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(DistributionLayerExporter.class.getName());
+
+    private final Installer installer;
+
+    private final PathAssembler pathAssembler;
+
+    /**
+     * @param installer
+     *            the installer, installing with the given path assembler
+     * @param pathAssembler
+     *            the path assembler rooted at the layer directory
+     */
+    public DistributionLayerExporter(Installer installer, PathAssembler pathAssembler) {
+        this.installer = installer;
+        this.pathAssembler = pathAssembler;
+    }
+
+    /**
+     * Installs the distribution of the configuration into the layer and returns
+     * its Maven home.
+     */
+    public File export(WrapperConfiguration configuration) throws Exception {
+        if (PathAssembler.PROJECT_STRING.equals(configuration.getDistributionBase())) {
+            throw new RuntimeException("Distributions installed into the project directory cannot be exported to a layer.");
+        }
+
+        // the layer is used as a shared store, whose installs are verified
+        installer.setRecordFiles(true);
+        File mavenHome = installer.createDist(configuration);
+
+        for (URI distributionUri : configuration.getDistributionUris()) {
+            LocalDistribution localDistribution = pathAssembler.getDistribution(configuration, distributionUri);
+            InstallStamp stamp = InstallStamp.read(localDistribution.getDistributionDir());
+
+            deleteArchive(localDistribution);
+
+            if (stamp != null && stamp.getSha256() != null) {
+                deleteArchive(pathAssembler.getContentAddressedDistribution(configuration, distributionUri, stamp.getSha256()));
+            }
+        }
+
+        makeReadable(pathAssembler.getDistributionsDir(configuration));
+        LOG.info(String.format("Exported %s to %s", mavenHome.getAbsolutePath(), pathAssembler.getDistributionsDir(configuration).getAbsolutePath()));
+
+        return mavenHome;
+    }
+
+    private void deleteArchive(LocalDistribution localDistribution) {
+        File zipFile = localDistribution.getZipFile();
+        File distDir = localDistribution.getDistributionDir().getAbsoluteFile();
+
+        zipFile.delete();
+        new File(zipFile.getParentFile(), zipFile.getName() + ".checksum").delete();
+        new File(distDir.getParentFile(), distDir.getName() + ".lck").delete();
+    }
+
+    /**
+     * Makes all files readable, and directories and executables runnable, by
+     * all users, as the image may run the builds as another user.
+     */
+    private void makeReadable(File root) {
+        Deque<File> dirs = new ArrayDeque<File>();
+
+        if (root.isDirectory()) {
+            dirs.push(root);
+        }
+
+        while (!dirs.isEmpty()) {
+            File dir = dirs.pop();
+            dir.setReadable(true, false);
+            dir.setExecutable(true, false);
+
+            File[] files = dir.listFiles();
+
+            if (files == null) {
+                continue;
+            }
+
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    dirs.push(file);
+                } else {
+                    file.setReadable(true, false);
+
+                    if (file.canExecute()) {
+                        file.setExecutable(true, false);
+                    }
+                }
+            }
+        }
+    }
+}
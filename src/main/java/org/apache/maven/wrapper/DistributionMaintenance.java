@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintenance commands for the distributions installed under the Maven user
+ * home, run with
+ * {@code java -cp maven/maven-wrapper.jar org.apache.maven.wrapper.DistributionMaintenance <command>}.
+ *
+ * <ul>
+ * <li>{@code dedupe}: hard-links identical jars of the installed distributions
+ * to a shared blob store.</li>
+ * <li>{@code evict [<maxAgeDays> [<maxSizeMb>]]}: removes the least recently
+ * used distributions beyond the given limits, by default those configured in
+ * the environment.</li>
+ * <li>{@code prefetch <directory> [<threads>]}: installs the distributions of
+ * all the wrapper configurations found below the directory, with at most the
+ * given number of parallel installs.</li>
+ * <li>{@code export <maven-wrapper.properties> <directory>}: installs the
+ * distribution of the wrapper configuration into the directory, laid out as a
+ * Maven user home to be copied into a container image layer.</li>
+ * </ul>
+ */
+public class DistributionMaintenance {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(DistributionMaintenance.class.getName());
+
+    public static final String DEDUPE_COMMAND = "dedupe";
+    public static final String EVICT_COMMAND = "evict";
+    public static final String PREFETCH_COMMAND = "prefetch";
+    public static final String EXPORT_COMMAND = "export";
+
+    private static final int DEFAULT_PREFETCH_THREADS = 4;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            System.exit(1);
+        }
+
+        File mavenUserHome = MavenWrapperMain.mavenUserHome();
+        WrapperConfiguration configuration = new WrapperConfiguration();
+
+        if (DEDUPE_COMMAND.equals(args[0]) && args.length == 1) {
+            dedupe(new PathAssembler(mavenUserHome), configuration, new File(mavenUserHome, configuration.getDistributionPath()));
+        } else if (EVICT_COMMAND.equals(args[0]) && args.length <= 3) {
+            if (args.length > 1) {
+                configuration.setMaxDistributionAgeDays(WrapperConfiguration.parseLimit(args[1]));
+            }
+
+            if (args.length > 2) {
+                configuration.setMaxDistributionsSizeMb(WrapperConfiguration.parseLimit(args[2]));
+            }
+
+            evict(new PathAssembler(mavenUserHome), configuration);
+        } else if (PREFETCH_COMMAND.equals(args[0]) && (args.length == 2 || args.length == 3)) {
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PREFETCH_THREADS;
+            PathAssembler pathAssembler = new CachingPathAssembler(mavenUserHome);
+            WrapperMetrics metrics = new WrapperMetrics();
+            Installer installer = new Installer(new DefaultDownloader("mvnw", MavenWrapperMain.wrapperVersion(), metrics), pathAssembler, metrics);
+            prefetch(new DistributionPrefetcher(installer, pathAssembler, threads), new File(args[1]));
+        } else if (EXPORT_COMMAND.equals(args[0]) && args.length == 3) {
+            PathAssembler pathAssembler = new PathAssembler(new File(args[2]));
+            WrapperMetrics metrics = new WrapperMetrics();
+            Installer installer = new Installer(new DefaultDownloader("mvnw", MavenWrapperMain.wrapperVersion(), metrics), pathAssembler, metrics);
+            new DistributionLayerExporter(installer, pathAssembler).export(WrapperExecutor.forWrapperPropertiesFile(new File(args[1])).getConfiguration());
+        } else {
+            usage();
+            System.exit(1);
+        }
+    }
+
+    static void dedupe(PathAssembler pathAssembler, WrapperConfiguration configuration, File distributionsDir) throws Exception {
+        DistributionDeduplicator deduplicator = new DistributionDeduplicator(pathAssembler.getBlobStoreDir(configuration));
+        deduplicator.dedupe(distributionsDir);
+        LOG.info(String.format("Linked %d files of %s to shared copies, saving %d bytes",
+                deduplicator.getLinkedFiles(), distributionsDir.getAbsolutePath(), deduplicator.getSavedBytes()));
+    }
+
+    static void evict(PathAssembler pathAssembler, WrapperConfiguration configuration) throws Exception {
+        DistributionEvictor evictor = new DistributionEvictor(pathAssembler, configuration);
+
+        if (!evictor.isEnabled()) {
+            LOG.info("No age or size limit given, nothing to evict");
+            return;
+        }
+
+        evictor.evict();
+        LOG.info(String.format("Evicted %d distributions", evictor.getEvictedCount()));
+    }
+
+    static void prefetch(DistributionPrefetcher prefetcher, File rootDir) throws Exception {
+        List<File> propertiesFiles = prefetcher.findWrapperProperties(rootDir);
+        Collection<WrapperConfiguration> distributions = prefetcher.collectDistributions(propertiesFiles);
+        LOG.info(String.format("Found %d wrapper configurations using %d distinct distributions", propertiesFiles.size(), distributions.size()));
+        prefetcher.prefetch(distributions);
+
+        if (prefetcher.getFailedCount() > 0) {
+            throw new RuntimeException(String.format("%d wrapper configurations or distributions could not be prefetched, see the warnings above.", prefetcher.getFailedCount()));
+        }
+
+        LOG.info(String.format("Prefetched %d distributions", prefetcher.getInstalledCount()));
+    }
+
+    private static void usage() {
+        String usage = String.format("Usage: java -cp maven-wrapper.jar %s", DistributionMaintenance.class.getName());
+        System.err.println(String.format("%s %s", usage, DEDUPE_COMMAND));
+        System.err.println(String.format("%s %s [<maxAgeDays> [<maxSizeMb>]]", usage, EVICT_COMMAND));
+        System.err.println(String.format("%s %s <directory> [<threads>]", usage, PREFETCH_COMMAND));
+        System.err.println(String.format("%s %s <maven-wrapper.properties> <directory>", usage, EXPORT_COMMAND));
+    }
+}
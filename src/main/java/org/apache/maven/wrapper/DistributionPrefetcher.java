@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Installs ahead of time the distributions of all the wrapper configurations
+ * found below a directory, e.g. to warm up the Maven user home of a build agent
+ * for a whole repository. Configurations sharing their distribution are only
+ * installed once, and distinct distributions are installed in parallel.
+ */
+public class DistributionPrefetcher {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(DistributionPrefetcher.class.getName());
+
+    public static final String PROPERTIES_FILE_NAME = "maven-wrapper.properties";
+
+    private final Installer installer;
+    private final PathAssembler pathAssembler;
+    private final int threads;
+    private final AtomicInteger installed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public DistributionPrefetcher(Installer installer, PathAssembler pathAssembler, int threads) {
+        this.installer = installer;
+        this.pathAssembler = pathAssembler;
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the wrapper properties files below the given directory, skipping
+     * hidden directories such as version control metadata.
+     */
+    public List<File> findWrapperProperties(File rootDir) throws IOException {
+        List<File> propertiesFiles = new ArrayList<File>();
+        Set<String> visited = new HashSet<String>();
+        Deque<File> pending = new LinkedList<File>();
+        pending.push(rootDir);
+
+        while (!pending.isEmpty()) {
+            File dir = pending.pop();
+
+            // symbolic links may lead back to a directory already visited
+            if (!visited.add(dir.getCanonicalPath())) {
+                continue;
+            }
+
+            File[] files = dir.listFiles();
+
+            if (files == null) {
+                continue;
+            }
+
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    if (!file.getName().startsWith(".")) {
+                        pending.push(file);
+                    }
+                } else if (file.getName().equals(PROPERTIES_FILE_NAME)) {
+                    propertiesFiles.add(file);
+                }
+            }
+        }
+
+        Collections.sort(propertiesFiles);
+        return propertiesFiles;
+    }
+
+    /**
+     * Reads the given wrapper properties files and returns one configuration per
+     * distinct set of distributions. Configurations installing into their project
+     * directory are skipped, as they depend on the directory the build runs in.
+     */
+    public Collection<WrapperConfiguration> collectDistributions(List<File> propertiesFiles) {
+        Map<List<String>, WrapperConfiguration> configurations = new LinkedHashMap<List<String>, WrapperConfiguration>();
+
+        for (File propertiesFile : propertiesFiles) {
+            WrapperConfiguration configuration;
+
+            try {
+                configuration = WrapperExecutor.forWrapperPropertiesFile(propertiesFile).getConfiguration();
+            } catch (RuntimeException e) {
+                LOG.warning(String.format("Skipping %s: %s", propertiesFile, e.getMessage()));
+                failed.incrementAndGet();
+                continue;
+            }
+
+            if (PathAssembler.PROJECT_STRING.equals(configuration.getDistributionBase())) {
+                LOG.info(String.format("Skipping %s, which installs into its project directory", propertiesFile));
+                continue;
+            }
+
+            List<String> key = new ArrayList<String>();
+
+            for (URI distributionUri : configuration.getDistributionUris()) {
+                key.add(distributionUri.toString());
+                key.add(pathAssembler.getDistribution(configuration, distributionUri).getDistributionDir().getAbsolutePath());
+            }
+
+            if (!configurations.containsKey(key)) {
+                configurations.put(key, configuration);
+            }
+        }
+
+        return configurations.values();
+    }
+
+    /**
+     * Installs the distributions of the given configurations, at most as many at
+     * once as this prefetcher has threads.
+     */
+    public void prefetch(Collection<WrapperConfiguration> configurations) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (final WrapperConfiguration configuration : configurations) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            File mavenHome = installer.createDist(configuration);
+                            LOG.info(String.format("Installed %s", mavenHome.getAbsolutePath()));
+                            installed.incrementAndGet();
+                        } catch (Exception e) {
+                            LOG.warning(String.format("Could not install %s: %s", configuration.getDistributionUris(), e.getMessage()));
+                            failed.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    public int getInstalledCount() {
+        return installed.get();
+    }
+
+    public int getFailedCount() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Inter-process lock on a distribution directory, held while it is unpacked or
+ * evicted. The lock is a {@code <distDir>.lck} file next to the directory, so
+ * that it survives the removal of the directory itself.
+ */
+class InstallLock {
+    private static final Set<String> HELD = new HashSet<String>();
+
+    private final String key;
+    private final RandomAccessFile file;
+    private final FileLock lock;
+
+    private InstallLock(String key, RandomAccessFile file, FileLock lock) {
+        this.key = key;
+        this.file = file;
+        this.lock = lock;
+    }
+
+    static File lockFile(File distDir) {
+        return new File(distDir.getAbsoluteFile().getParentFile(), distDir.getName() + ".lck");
+    }
+
+    /**
+     * Waits until the lock on the distribution directory is available.
+     */
+    static InstallLock acquire(File distDir) throws IOException {
+        File lockFile = lockFile(distDir);
+        String key = lockFile.getPath();
+
+        // file locks are held by the whole JVM, so threads are serialized here
+        synchronized (HELD) {
+            while (HELD.contains(key)) {
+                try {
+                    HELD.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(String.format("Interrupted while waiting for %s", lockFile));
+                }
+            }
+
+            HELD.add(key);
+        }
+
+        RandomAccessFile file = null;
+
+        try {
+            lockFile.getParentFile().mkdirs();
+            file = new RandomAccessFile(lockFile, "rw");
+            return new InstallLock(key, file, file.getChannel().lock());
+        } catch (IOException e) {
+            close(file);
+            unregister(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the lock on the distribution directory, or null if another thread
+     * or process holds it.
+     */
+    static InstallLock tryAcquire(File distDir) throws IOException {
+        File lockFile = lockFile(distDir);
+        String key = lockFile.getPath();
+
+        synchronized (HELD) {
+            if (!HELD.add(key)) {
+                return null;
+            }
+        }
+
+        RandomAccessFile file = null;
+        FileLock lock = null;
+
+        try {
+            lockFile.getParentFile().mkdirs();
+            file = new RandomAccessFile(lockFile, "rw");
+            lock = file.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } finally {
+            if (lock == null) {
+                close(file);
+                unregister(key);
+            }
+        }
+
+        return lock == null ? null : new InstallLock(key, file, lock);
+    }
+
+    void release() {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            // closing the file releases the lock as well
+        } finally {
+            close(file);
+            unregister(key);
+        }
+    }
+
+    private static void close(RandomAccessFile file) {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+
+    private static void unregister(String key) {
+        synchronized (HELD) {
+            HELD.remove(key);
+            HELD.notifyAll();
+        }
+    }
+}
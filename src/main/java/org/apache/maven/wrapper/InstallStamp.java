@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Manifest written into the distribution directory once a distribution has
+ * been completely installed. It records the distribution URL and the location
+ * of the Maven home relative to the distribution directory, so that an install
+ * can be recognised and validated without looking at the archive, e.g. in a
+ * read-only shared store. The stamp of an install also lists the size and
+ * SHA-256 digest of every file of the Maven home.
+ */
+public class InstallStamp {
+    public static final String STAMP_FILE_NAME = "maven-wrapper.stamp";
+
+    private static final String STAMP_COMMENTS = "Maven wrapper install stamp";
+    private static final String DISTRIBUTION_URL_KEY = "distributionUrl";
+    private static final String MAVEN_HOME_KEY = "mavenHome";
+    private static final String SHA256_KEY = "sha256";
+    private static final String LAUNCHER_JAR_KEY = "launcherJar";
+    private static final String FILE_KEY_PREFIX = "file.";
+
+    private final File distDir;
+
+    private final Properties properties;
+
+    public InstallStamp(File distDir) {
+        this(distDir, new Properties());
+    }
+
+    private InstallStamp(File distDir, Properties properties) {
+        this.distDir = distDir;
+        this.properties = properties;
+    }
+
+    /**
+     * Reads the stamp of the given distribution directory. Returns null if the
+     * directory holds no readable stamp.
+     */
+    public static InstallStamp read(File distDir) {
+        File stampFile = new File(distDir, STAMP_FILE_NAME);
+
+        if (!stampFile.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+
+        try {
+            InputStream inStream = new FileInputStream(stampFile);
+
+            try {
+                properties.load(inStream);
+            } finally {
+                inStream.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        return new InstallStamp(distDir, properties);
+    }
+
+    public String getDistributionUrl() {
+        return properties.getProperty(DISTRIBUTION_URL_KEY);
+    }
+
+    public void setDistributionUrl(URI distributionUrl) {
+        properties.setProperty(DISTRIBUTION_URL_KEY, distributionUrl.toString());
+    }
+
+    /**
+     * Returns the Maven home recorded in this stamp, or null if none was
+     * recorded.
+     */
+    public File getMavenHome() {
+        String mavenHome = properties.getProperty(MAVEN_HOME_KEY);
+        return mavenHome == null ? null : new File(distDir, mavenHome);
+    }
+
+    /**
+     * Records the Maven home as a path relative to the distribution directory,
+     * so that the directory can be moved or mounted elsewhere.
+     */
+    public void setMavenHome(String relativePath) {
+        properties.setProperty(MAVEN_HOME_KEY, relativePath);
+    }
+
+    /**
+     * Records the given Maven home, which may live outside of the distribution
+     * directory, relative to the distribution directory.
+     */
+    public void setMavenHome(File mavenHome) {
+        setMavenHome(relativePath(distDir.getAbsoluteFile(), mavenHome.getAbsoluteFile()));
+    }
+
+    /**
+     * Returns the SHA-256 digest of the installed archive, or null if it was not
+     * recorded.
+     */
+    public String getSha256() {
+        return properties.getProperty(SHA256_KEY);
+    }
+
+    public void setSha256(String sha256) {
+        properties.setProperty(SHA256_KEY, sha256);
+    }
+
+    /**
+     * Returns the path of the Maven launcher jar relative to the Maven home, or
+     * null if it was not recorded.
+     */
+    public String getLauncherJar() {
+        return properties.getProperty(LAUNCHER_JAR_KEY);
+    }
+
+    public void setLauncherJar(String relativePath) {
+        properties.setProperty(LAUNCHER_JAR_KEY, relativePath);
+    }
+
+    /**
+     * Records the size and SHA-256 digest of every file of the given Maven home,
+     * keyed by its path relative to the Maven home.
+     */
+    public void setFiles(File mavenHome) throws IOException {
+        Deque<File> pending = new LinkedList<File>();
+        pending.push(mavenHome);
+
+        while (!pending.isEmpty()) {
+            File[] files = pending.pop().listFiles();
+
+            if (files == null) {
+                continue;
+            }
+
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    pending.push(file);
+                } else if (file.isFile()) {
+                    String path = relativePath(mavenHome.getAbsoluteFile(), file.getAbsoluteFile());
+                    properties.setProperty(FILE_KEY_PREFIX + path, file.length() + " " + sha256(file));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the Maven home recorded in this stamp exists.
+     */
+    public boolean isComplete() {
+        File mavenHome = getMavenHome();
+
+        return mavenHome != null && mavenHome.isDirectory();
+    }
+
+    /**
+     * Returns true if this stamp describes a complete install of the given
+     * distribution.
+     */
+    public boolean isValidFor(URI distributionUrl) {
+        return distributionUrl.toString().equals(getDistributionUrl()) && isComplete();
+    }
+
+    /**
+     * Returns true if the install recorded in this stamp can be launched as is:
+     * it is complete, its launcher jar and {@code bin/m2.conf} exist, and every
+     * recorded file still has its recorded size. The launcher jar and
+     * {@code bin/m2.conf}, which decide what Maven loads, must also still have
+     * their recorded digest. Installs stamped without a file list are not
+     * intact.
+     */
+    public boolean isIntact() {
+        File mavenHome = getMavenHome();
+        String launcherJar = getLauncherJar();
+
+        if (!isComplete() || launcherJar == null || properties.getProperty(FILE_KEY_PREFIX + launcherJar) == null
+                || properties.getProperty(FILE_KEY_PREFIX + LaunchConfiguration.M2_CONF_PATH) == null) {
+            return false;
+        }
+
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(FILE_KEY_PREFIX)) {
+                continue;
+            }
+
+            String path = key.substring(FILE_KEY_PREFIX.length());
+            String[] sizeAndDigest = properties.getProperty(key).split(" ", 2);
+            File file = new File(mavenHome, path);
+
+            if (sizeAndDigest.length != 2 || !file.isFile() || !String.valueOf(file.length()).equals(sizeAndDigest[0])) {
+                return false;
+            }
+
+            if (path.equals(launcherJar) || path.equals(LaunchConfiguration.M2_CONF_PATH)) {
+                try {
+                    if (!sha256(file).equalsIgnoreCase(sizeAndDigest[1])) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static String sha256(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+
+        try {
+            return Checksum.SHA256.generate(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String relativePath(File from, File to) {
+        String[] fromParts = from.getPath().split(Pattern.quote(File.separator));
+        String[] toParts = to.getPath().split(Pattern.quote(File.separator));
+        int common = 0;
+
+        while (common < fromParts.length && common < toParts.length && fromParts[common].equals(toParts[common])) {
+            common++;
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = common; i < fromParts.length; i++) {
+            sb.append("../");
+        }
+
+        for (int i = common; i < toParts.length; i++) {
+            sb.append(toParts[i]);
+
+            if (i < toParts.length - 1) {
+                sb.append('/');
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Writes the stamp, replacing any previous one only once the new one is
+     * complete.
+     */
+    public void write() throws IOException {
+        File stampFile = new File(distDir, STAMP_FILE_NAME);
+        File tmpStampFile = new File(distDir, STAMP_FILE_NAME + ".part");
+        OutputStream outStream = new FileOutputStream(tmpStampFile);
+
+        try {
+            properties.store(outStream, STAMP_COMMENTS);
+        } finally {
+            outStream.close();
+        }
+
+        if (!tmpStampFile.renameTo(stampFile)) {
+            stampFile.delete();
+
+            if (!tmpStampFile.renameTo(stampFile)) {
+                throw new IOException(String.format("Could not write install stamp '%s'.", stampFile));
+            }
+        }
+    }
+}
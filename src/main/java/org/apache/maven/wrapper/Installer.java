@@ -33,7 +33,6 @@ import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -43,16 +42,37 @@ import org.apache.maven.wrapper.PathAssembler.LocalDistribution;
  * @author Hans Dockter
  */
 public class Installer {
-    private static final Logger LOG = Logger.getLogger(Installer.class.getName());
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(Installer.class.getName());
     public static final String DEFAULT_DISTRIBUTION_PATH = "wrapper/dists";
+    static final String CDS_ARCHIVE_PREFIX = "maven-wrapper-";
 
     private final Downloader download;
 
     private final PathAssembler pathAssembler;
 
+    private final WrapperMetrics metrics;
+
+    private boolean recordFiles;
+
     public Installer(Downloader download, PathAssembler pathAssembler) {
+        this(download, pathAssembler, new WrapperMetrics());
+    }
+
+    public Installer(Downloader download, PathAssembler pathAssembler, WrapperMetrics metrics) {
         this.download = download;
         this.pathAssembler = pathAssembler;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Makes the stamps of all installs record the SHA-256 digest of their
+     * archive and the size and digest of each of their files, as needed to
+     * verify them when they are used from a shared store, e.g. once exported to
+     * an image layer. The stamps of installs into a {@code SHARED} base always
+     * record them. Hashing every file slows the install down.
+     */
+    public void setRecordFiles(boolean recordFiles) {
+        this.recordFiles = recordFiles;
     }
 
     public File createDist(WrapperConfiguration configuration) throws Exception {
@@ -77,80 +97,575 @@ public class Installer {
         throw failure;
     }
 
+    /**
+     * Evicts the least recently used distributions in the background if a size
+     * or age limit is configured.
+     */
+    public void startEviction(WrapperConfiguration configuration) {
+        new DistributionEvictor(pathAssembler, configuration).startInBackground();
+    }
+
     private File createDistFromUri(final WrapperConfiguration configuration, final URI distributionUrl) throws Exception {
-        boolean alwaysDownload = configuration.isAlwaysDownload();
-        boolean alwaysUnpack = configuration.isAlwaysUnpack();
+        boolean reuse = !configuration.isAlwaysDownload() && !configuration.isAlwaysUnpack();
 
         LocalDistribution localDistribution = pathAssembler.getDistribution(configuration, distributionUrl);
+
+        if (reuse) {
+            File sharedMavenHome = findSharedDistribution(configuration, localDistribution, distributionUrl);
+
+            if (sharedMavenHome != null) {
+                return sharedMavenHome;
+            }
+        }
+
+        File mavenHome = installDist(configuration, distributionUrl, localDistribution, reuse);
+
+        if (reuse && !mavenHome.isDirectory()) {
+            // evicted by another build between reading the stamp and touching
+            // the install, which is then made again under the install lock
+            LOG.info(String.format("Maven distribution '%s' was evicted meanwhile, installing it again", distributionUrl));
+            mavenHome = installDist(configuration, distributionUrl, localDistribution, false);
+        }
+
+        return mavenHome;
+    }
+
+    /**
+     * Returns the Maven home of the distribution, installing it unless the
+     * stamp of a complete install may be reused, and touches it.
+     */
+    private File installDist(final WrapperConfiguration configuration,
+                             final URI distributionUrl,
+                             final LocalDistribution localDistribution,
+                             final boolean reuse) throws Exception {
+        File mavenHome;
+        // read once, later reads only follow changes made under the install lock
+        InstallStamp stamp = InstallStamp.read(localDistribution.getDistributionDir());
+
+        if (configuration.isContentAddressed()) {
+            mavenHome = createContentAddressedDist(configuration, distributionUrl, localDistribution, stamp, reuse);
+        } else if (isLocalArchive(distributionUrl)) {
+            mavenHome = unpackLocalArchive(configuration, distributionUrl, localDistribution, stamp, reuse);
+        } else if (reuse && stamp != null && stamp.isValidFor(distributionUrl)) {
+            // a complete install no longer needs its archive, e.g. when it was
+            // exported to an image layer without it
+            mavenHome = stamp.getMavenHome();
+        } else {
+            File localZipFile = localDistribution.getZipFile();
+            long downloadedSince = downloadDistribution(configuration, distributionUrl, localZipFile, null);
+            mavenHome = unpackDistribution(configuration, distributionUrl, localZipFile, localDistribution.getDistributionDir(), stamp, null,
+                    false, configuration.isAlwaysUnpack() ? Long.MAX_VALUE : downloadedSince);
+        }
+
+        // the modification time of a distribution directory is its last access
+        touch(localDistribution.getDistributionDir());
+        touch(mavenHome.getParentFile());
+
+        return mavenHome;
+    }
+
+    /**
+     * Deletes the class data sharing archives that the launcher script keeps
+     * next to an install, as they are only valid for the install they were
+     * created from.
+     */
+    private void deleteClassDataArchives(File distDir) {
+        File[] files = distDir.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isFile() && file.getName().startsWith(CDS_ARCHIVE_PREFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    private void touch(File distDir) {
+        if (distDir.isDirectory()) {
+            distDir.setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Installs the distribution below a directory keyed by the SHA-256 digest of
+     * its archive, so that mirrors and renamed URLs of the same archive share a
+     * single install. The URL-keyed distribution directory only holds a stamp
+     * pointing at the content-addressed Maven home.
+     */
+    private File createContentAddressedDist(final WrapperConfiguration configuration,
+                                            final URI distributionUrl,
+                                            final LocalDistribution localDistribution,
+                                            final InstallStamp pointer,
+                                            final boolean reuse) throws Exception {
+        File pointerDir = localDistribution.getDistributionDir();
+
+        if (reuse) {
+            if (pointer != null && pointer.isValidFor(distributionUrl)) {
+                return pointer.getMavenHome();
+            }
+        }
+
         File localZipFile = localDistribution.getZipFile();
-        boolean downloaded = false;
-	
-        if (alwaysDownload || !localZipFile.exists()) {
-            File tmpZipFile = new File(localZipFile.getParentFile(), localZipFile.getName() + ".part");
-            tmpZipFile.delete();
-            LOG.info(String.format("Downloading %s", distributionUrl));
+        String expectedChecksum = null;
+        InstallStamp stamp = null;
+
+        if (configuration.isVerifyDownload() && configuration.getChecksumAlgorithm() == Checksum.SHA256
+                && !isUnavailableOffline(configuration, distributionUrl)
+                && (configuration.isAlwaysDownload() || !localZipFile.exists())) {
+            // The published checksum is the content address, so an install
+            // made from another URL can be reused without downloading.
+            expectedChecksum = expectedChecksum(configuration, distributionUrl, localZipFile);
+
+            if (reuse) {
+                LocalDistribution contentDistribution = pathAssembler.getContentAddressedDistribution(configuration, distributionUrl, expectedChecksum);
+                stamp = InstallStamp.read(contentDistribution.getDistributionDir());
+
+                if (stamp != null && stamp.isComplete() && expectedChecksum.equalsIgnoreCase(stamp.getSha256())) {
+                    writePointerStamp(pointerDir, distributionUrl, stamp.getMavenHome());
+                    return stamp.getMavenHome();
+                }
+            }
+        }
+
+        boolean local = isLocalArchive(distributionUrl);
+        File archive = local ? localArchive(distributionUrl) : localZipFile;
+
+        if (local) {
+            verifyLocalArchive(configuration, distributionUrl, archive, localZipFile, expectedChecksum);
+        } else {
+            downloadDistribution(configuration, distributionUrl, localZipFile, expectedChecksum);
+        }
+
+        long checksumStart = System.nanoTime();
+        String sha256 = sha256(archive);
+        metrics.addElapsed("install.checksumMillis", checksumStart);
+
+        LocalDistribution contentDistribution = pathAssembler.getContentAddressedDistribution(configuration, distributionUrl, sha256);
+        File contentZipFile = contentDistribution.getZipFile();
+
+        if (stamp == null || !sha256.equalsIgnoreCase(expectedChecksum)) {
+            stamp = InstallStamp.read(contentDistribution.getDistributionDir());
+        }
+
+        if (local) {
+            // unzipped where it is
+            contentZipFile = archive;
+        } else if (contentZipFile.exists()) {
+            localZipFile.delete();
+        } else {
+            contentZipFile.getParentFile().mkdirs();
+
+            if (!localZipFile.renameTo(contentZipFile)) {
+                contentZipFile = localZipFile;
+            }
+        }
+
+        File mavenHome = unpackDistribution(configuration, distributionUrl, contentZipFile, contentDistribution.getDistributionDir(), stamp, sha256,
+                true, configuration.isAlwaysUnpack() ? Long.MAX_VALUE : 0L);
+        writePointerStamp(pointerDir, distributionUrl, mavenHome);
+
+        return mavenHome;
+    }
+
+    /**
+     * Unzips a local archive, such as the one of a bundled wrapper, where it is
+     * rather than copying it into the zip store first. The archive is verified
+     * before it is unzipped. An install is reused only if it was made from the
+     * archive as it is now.
+     */
+    private File unpackLocalArchive(final WrapperConfiguration configuration,
+                                    final URI distributionUrl,
+                                    final LocalDistribution localDistribution,
+                                    final InstallStamp stamp,
+                                    final boolean reuse) throws Exception {
+        File archive = localArchive(distributionUrl);
+        File distDir = localDistribution.getDistributionDir();
+        long staleBefore = reuse ? 0L : Long.MAX_VALUE;
+        String sha256 = null;
+
+        if (!isInstalled(distDir, listDirs(distDir), stamp, true, staleBefore) || !isInstalledFrom(distDir, stamp, archive)) {
+            // an install completed by another build meanwhile is reused
+            staleBefore = Math.max(staleBefore, System.currentTimeMillis());
+            verifyLocalArchive(configuration, distributionUrl, archive, localDistribution.getZipFile(), null);
+            long checksumStart = System.nanoTime();
+            sha256 = sha256(archive);
+            metrics.addElapsed("install.checksumMillis", checksumStart);
+        }
+
+        return unpackDistribution(configuration, distributionUrl, archive, distDir, stamp, sha256, true, staleBefore);
+    }
+
+    /**
+     * Returns true if the install was made from the given local archive. The
+     * archive is only hashed if it was modified since the install, after which
+     * the stamp is touched so that it is not hashed again.
+     */
+    private boolean isInstalledFrom(File distDir, InstallStamp stamp, File archive) throws IOException {
+        File stampFile = new File(distDir, InstallStamp.STAMP_FILE_NAME);
+
+        if (archive.lastModified() <= stampFile.lastModified()) {
+            return true;
+        }
+
+        long checksumStart = System.nanoTime();
+        boolean installedFrom = sha256(archive).equalsIgnoreCase(stamp.getSha256());
+        metrics.addElapsed("install.checksumMillis", checksumStart);
+
+        if (installedFrom) {
+            stampFile.setLastModified(Math.max(archive.lastModified(), System.currentTimeMillis()));
+        } else {
+            LOG.info(String.format("Maven distribution %s was modified since it was installed", archive.getAbsolutePath()));
+        }
+
+        return installedFrom;
+    }
+
+    private boolean isLocalArchive(URI distributionUrl) {
+        return "file".equals(distributionUrl.getScheme());
+    }
+
+    private File localArchive(URI distributionUrl) {
+        File archive = new File(distributionUrl);
+
+        if (!archive.isFile()) {
+            throw new RuntimeException(String.format("Maven distribution '%s' does not exist.", distributionUrl));
+        }
+
+        return archive;
+    }
+
+    /**
+     * Verifies a local archive the way a download is verified, the checksum
+     * file being stored next to the given zip file.
+     */
+    private void verifyLocalArchive(WrapperConfiguration configuration,
+                                    URI distributionUrl,
+                                    File archive,
+                                    File localZipFile,
+                                    String expectedChecksum) throws Exception {
+        if (!configuration.isVerifyDownload()) {
+            return;
+        }
+
+        if (expectedChecksum == null) {
+            expectedChecksum = expectedChecksum(configuration, distributionUrl, localZipFile);
+        }
+
+        verifyDistribution(configuration.getChecksumAlgorithm(), distributionUrl, expectedChecksum, archive);
+    }
+
+    /**
+     * Downloads the distribution to the given zip file unless it is already
+     * present, and returns the time the download started, or 0 if it was not
+     * downloaded.
+     */
+    private long downloadDistribution(WrapperConfiguration configuration,
+                                         URI distributionUrl,
+                                         File localZipFile,
+                                         String expectedChecksum) throws Exception {
+        if (localZipFile.exists() && (!configuration.isAlwaysDownload() || configuration.isOffline())) {
+            return 0L;
+        }
+
+        if (isUnavailableOffline(configuration, distributionUrl)) {
+            throw new RuntimeException(String.format(
+                    "Maven distribution '%s' is not available locally and cannot be downloaded in offline mode.", distributionUrl));
+        }
+
+        // concurrent builds each download to their own file, which the
+        // downloader expects not to exist yet
+        localZipFile.getParentFile().mkdirs();
+        File tmpZipFile = File.createTempFile(localZipFile.getName() + "-", ".part", localZipFile.getParentFile());
+        tmpZipFile.delete();
+        long downloadedSince = System.currentTimeMillis();
+        LOG.info(String.format("Downloading %s", distributionUrl));
+        long downloadStart = System.nanoTime();
+
+        try {
             download.download(distributionUrl, tmpZipFile);
-	    
+            metrics.addElapsed("install.downloadMillis", downloadStart);
+            // the throughput of the archives only, without their checksum files
+            metrics.add("download.archiveBytes", tmpZipFile.length());
+            metrics.set("download.bytesPerSecond",
+                    metrics.get("download.archiveBytes") * 1000000000L / Math.max(1L, metrics.getNanos("install.downloadMillis")));
+
             if (configuration.isVerifyDownload()) {
-                File localChecksumFile = new File(localZipFile.getParentFile(), localZipFile.getName() + ".checksum");
-                verifyDistribution(configuration.getChecksumAlgorithm(), distributionUrl, localChecksumFile, tmpZipFile);
+                if (expectedChecksum == null) {
+                    expectedChecksum = expectedChecksum(configuration, distributionUrl, localZipFile);
+                }
+
+                verifyDistribution(configuration.getChecksumAlgorithm(), distributionUrl, expectedChecksum, tmpZipFile);
+            }
+
+            if (!replaceFile(tmpZipFile, localZipFile)) {
+                // On Windows the archive of a concurrent build cannot be replaced
+                // while that build unzips it, the archive in place is used then,
+                // verified like the download as it may be an incomplete one.
+                if (!localZipFile.isFile()) {
+                    throw new IOException(String.format("Could not move the downloaded distribution to %s", localZipFile));
+                }
+
+                if (configuration.isVerifyDownload()) {
+                    verifyDistribution(configuration.getChecksumAlgorithm(), distributionUrl, expectedChecksum, localZipFile);
+                }
             }
-	    
-            tmpZipFile.renameTo(localZipFile);
-            downloaded = true;
+        } finally {
+            tmpZipFile.delete();
         }
 
-        File distDir = localDistribution.getDistributionDir();
+        return downloadedSince;
+    }
+
+    /**
+     * Moves the given file over the target, deleting the target first if it
+     * cannot be replaced directly, and returns whether it was moved.
+     */
+    boolean replaceFile(File file, File target) {
+        return file.renameTo(target) || (target.delete() && file.renameTo(target));
+    }
+
+    /**
+     * Returns true if the install stamp of the distribution directory was
+     * written before the given time. A missing stamp has a modification time of
+     * 0, so it is stale for any time but 0.
+     */
+    private boolean isStale(File distDir, long staleBefore) {
+        return new File(distDir, InstallStamp.STAMP_FILE_NAME).lastModified() < staleBefore;
+    }
+
+    /**
+     * Returns true if the distribution directory holds an install that can be
+     * used as is: a single unpacked directory, not stale, and, if a stamp is
+     * required, with a complete stamp. The stamp is the one read from the
+     * distribution directory, or null if it has none.
+     */
+    private boolean isInstalled(File distDir, List<File> dirs, InstallStamp stamp, boolean requireStamp, long staleBefore) {
+        if (dirs.isEmpty() || isStale(distDir, staleBefore)) {
+            return false;
+        }
+
+        if (!requireStamp) {
+            return true;
+        }
+
+        return stamp != null && stamp.isComplete();
+    }
+
+    private boolean isUnavailableOffline(WrapperConfiguration configuration, URI distributionUrl) {
+        return configuration.isOffline() && !isLocalArchive(distributionUrl);
+    }
+
+    /**
+     * Unpacks the zip file into the distribution directory unless it holds an
+     * install completed since the given time, and returns the single Maven home
+     * it contains. An install without a stamp is stale for any time but 0, and
+     * counts as missing if a stamp is required, e.g. as the remains of an
+     * interrupted unpack. The stamp is the one already read from the
+     * distribution directory, which is read again under the install lock.
+     */
+    private File unpackDistribution(WrapperConfiguration configuration,
+                                    URI distributionUrl,
+                                    File localZipFile,
+                                    File distDir,
+                                    InstallStamp stamp,
+                                    String sha256,
+                                    boolean requireStamp,
+                                    long staleBefore) throws IOException {
         List<File> dirs = listDirs(distDir);
 
-        if (downloaded || alwaysUnpack || dirs.isEmpty()) {
-            for (File dir : dirs) {
-                LOG.info(String.format("Deleting directory %s", dir.getAbsolutePath()));
-                deleteDir(dir);
-            }
-	    
-            LOG.info(String.format("Unzipping %s to %s", localZipFile.getAbsolutePath(), distDir.getAbsolutePath()));
-            unzip(localZipFile, distDir);
-            dirs = listDirs(distDir);
+        if (!isInstalled(distDir, dirs, stamp, requireStamp, staleBefore)) {
+            InstallLock lock = InstallLock.acquire(distDir);
 
-	    if (dirs.isEmpty()) {
-                throw new RuntimeException(
-                        String.format("Maven distribution '%s' does not contain any directories. Expected to find exactly 1 directory.",
-                                distributionUrl));
+            try {
+                // another build may have completed the install meanwhile,
+                // possibly from the same archive downloaded concurrently
+                dirs = listDirs(distDir);
+
+                if (!isInstalled(distDir, dirs, InstallStamp.read(distDir), requireStamp, staleBefore)) {
+                    long deleteStart = System.nanoTime();
+
+                    for (File dir : dirs) {
+                        LOG.info(String.format("Deleting directory %s", dir.getAbsolutePath()));
+                        deleteDir(dir);
+                    }
+
+                    deleteClassDataArchives(distDir);
+                    // only valid for the install it was created from
+                    new File(distDir, LaunchConfiguration.CACHE_FILE_NAME).delete();
+                    metrics.addElapsed("install.deleteMillis", deleteStart);
+
+                    LOG.info(String.format("Unzipping %s to %s", localZipFile.getAbsolutePath(), distDir.getAbsolutePath()));
+                    long unzipStart = System.nanoTime();
+                    unzip(localZipFile, distDir);
+                    metrics.addElapsed("install.unzipMillis", unzipStart);
+                    dirs = listDirs(distDir);
+
+                    if (dirs.isEmpty()) {
+                        throw new RuntimeException(
+                                String.format("Maven distribution '%s' does not contain any directories. Expected to find exactly 1 directory.",
+                                        distributionUrl));
+                    }
+
+                    long chmodStart = System.nanoTime();
+                    setExecutablePermissions(dirs.get(0));
+                    metrics.addElapsed("install.chmodMillis", chmodStart);
+
+                    if (configuration.isDedupe()) {
+                        long dedupeStart = System.nanoTime();
+                        dedupe(configuration, dirs.get(0));
+                        metrics.addElapsed("install.dedupeMillis", dedupeStart);
+                    }
+
+                    if (dirs.size() == 1) {
+                        boolean record = recordFiles || PathAssembler.SHARED_STRING.equals(configuration.getDistributionBase());
+
+                        if (record && sha256 == null) {
+                            sha256 = sha256(localZipFile);
+                        }
+
+                        writeInstallStamp(distDir, distributionUrl, sha256, dirs.get(0), record);
+                    }
+                }
+            } finally {
+                lock.release();
             }
-	    
-            setExecutablePermissions(dirs.get(0));
         }
-	
+
         if (dirs.size() != 1) {
             throw new RuntimeException(String.format(
                     "Maven distribution '%s' contains too many directories. Expected to find exactly 1 directory.", distributionUrl));
         }
-	
+
         return dirs.get(0);
     }
 
-    private void verifyDistribution(Checksum checksum,
-				    URI distributionUri,
-				    File localChecksumFile,
-				    File distributionZipFile) throws Exception {
-        File tmpZipFile = new File(localChecksumFile.getParentFile(), localChecksumFile.getName() + ".part");
-        tmpZipFile.delete();
+    /**
+     * Returns the Maven home of the first shared store holding an intact
+     * install of the distribution, or null if no store has one. The stamp of a
+     * content-addressed install is the one next to its Maven home. An install
+     * made from another archive than the one whose SHA-256 checksum is pinned
+     * is not used.
+     */
+    private File findSharedDistribution(WrapperConfiguration configuration, LocalDistribution localDistribution, URI distributionUrl) {
+        for (File sharedDistDir : localDistribution.getSharedDistributionDirs()) {
+            InstallStamp pointer = InstallStamp.read(sharedDistDir);
+
+            if (pointer == null || !pointer.isValidFor(distributionUrl)) {
+                continue;
+            }
+
+            File mavenHome = pointer.getMavenHome();
+            InstallStamp stamp = InstallStamp.read(mavenHome.getParentFile());
+
+            if (stamp == null || !stamp.isIntact() || !mavenHome.equals(stamp.getMavenHome())) {
+                LOG.warning(String.format("Ignoring the incomplete or modified Maven distribution %s", mavenHome.getAbsolutePath()));
+            } else if (configuration.getDistributionChecksum() != null && configuration.getChecksumAlgorithm() == Checksum.SHA256
+                    && !configuration.getDistributionChecksum().trim().equalsIgnoreCase(stamp.getSha256())) {
+                LOG.warning(String.format("Ignoring the Maven distribution %s, which does not match the pinned checksum", mavenHome.getAbsolutePath()));
+            } else {
+                return mavenHome;
+            }
+        }
+
+        return null;
+    }
+
+    private void dedupe(WrapperConfiguration configuration, File mavenHome) {
+        DistributionDeduplicator deduplicator = new DistributionDeduplicator(pathAssembler.getBlobStoreDir(configuration));
+
+        try {
+            deduplicator.dedupe(mavenHome);
+            LOG.info(String.format("Linked %d files of %s to shared copies", deduplicator.getLinkedFiles(), mavenHome.getAbsolutePath()));
+        } catch (IOException e) {
+            LOG.warning(String.format("Could not deduplicate %s: %s", mavenHome.getAbsolutePath(), e.getMessage()));
+        }
+    }
+
+    private void writeInstallStamp(File distDir, URI distributionUrl, String sha256, File mavenHome, boolean recordFiles) {
+        InstallStamp stamp = new InstallStamp(distDir);
+        stamp.setDistributionUrl(distributionUrl);
+        stamp.setMavenHome(mavenHome);
+
+        if (sha256 != null) {
+            stamp.setSha256(sha256);
+        }
 
-	URI checksumUri = URI.create(String.format("%s.%s", distributionUri.toString(), checksum.getDefaultExtension()));
+        File launcherJar = BootstrapMainStarter.scanLauncherJar(mavenHome);
+
+        if (launcherJar != null) {
+            stamp.setLauncherJar(BootstrapMainStarter.BOOT_PATH + "/" + launcherJar.getName());
+        }
+
+        if (recordFiles) {
+            try {
+                stamp.setFiles(mavenHome);
+            } catch (IOException e) {
+                LOG.warning(String.format("Could not list the files of %s in its install stamp: %s", mavenHome.getAbsolutePath(), e.getMessage()));
+            }
+        }
+
+        writeStamp(stamp, distDir);
+    }
+
+    private void writePointerStamp(File distDir, URI distributionUrl, File mavenHome) {
+        distDir.mkdirs();
+        deleteClassDataArchives(distDir);
+        InstallStamp stamp = new InstallStamp(distDir);
+        stamp.setDistributionUrl(distributionUrl);
+        stamp.setMavenHome(mavenHome);
+        writeStamp(stamp, distDir);
+    }
+
+    private void writeStamp(InstallStamp stamp, File distDir) {
+        try {
+            stamp.write();
+        } catch (IOException e) {
+            LOG.warning(String.format("Could not write install stamp for %s: %s", distDir.getAbsolutePath(), e.getMessage()));
+        }
+    }
+
+    private File checksumFile(File localZipFile) {
+        return new File(localZipFile.getParentFile(), localZipFile.getName() + ".checksum");
+    }
+
+    private URI checksumUri(Checksum checksum, URI distributionUri) {
+        return URI.create(String.format("%s.%s", distributionUri.toString(), checksum.getDefaultExtension()));
+    }
+
+    /**
+     * Returns the checksum pinned in the configuration, or else downloads the
+     * published checksum of the distribution.
+     */
+    private String expectedChecksum(WrapperConfiguration configuration, URI distributionUri, File localZipFile) throws Exception {
+        if (configuration.getDistributionChecksum() != null) {
+            return configuration.getDistributionChecksum().trim().toLowerCase(Locale.US);
+        }
+
+        return fetchChecksum(configuration.getChecksumAlgorithm(), distributionUri, checksumFile(localZipFile));
+    }
+
+    /**
+     * Downloads the published checksum of the distribution and returns it.
+     */
+    private String fetchChecksum(Checksum checksum, URI distributionUri, File localChecksumFile) throws Exception {
+        File tmpChecksumFile = new File(localChecksumFile.getParentFile(), localChecksumFile.getName() + ".part");
+        tmpChecksumFile.delete();
+        localChecksumFile.getParentFile().mkdirs();
+
+        URI checksumUri = checksumUri(checksum, distributionUri);
         LOG.info(String.format("Verifying download with %s", checksumUri));
-        download.download(checksumUri, tmpZipFile);
-        tmpZipFile.renameTo(localChecksumFile);
+        download.download(checksumUri, tmpChecksumFile);
+        tmpChecksumFile.renameTo(localChecksumFile);
 
         BufferedReader checksumReader = null;
 
         try {
             checksumReader = new BufferedReader(new InputStreamReader(new FileInputStream(localChecksumFile), "UTF-8"));
-	    
-            if (!checksum.verify(new FileInputStream(distributionZipFile), checksumReader.readLine())) {
-                throw new RuntimeException(
-                        String.format("Maven distribution '%s' failed to verify against '%s'.", distributionUri, checksumUri));
-            }
+            String line = checksumReader.readLine();
+            return line == null ? "" : line.trim();
         } finally {
             if (checksumReader != null) {
                 checksumReader.close();
@@ -158,6 +673,36 @@ public class Installer {
         }
     }
 
+    private void verifyDistribution(Checksum checksum,
+				    URI distributionUri,
+				    String expectedChecksum,
+				    File distributionZipFile) throws Exception {
+        InputStream in = new FileInputStream(distributionZipFile);
+
+        try {
+            long checksumStart = System.nanoTime();
+            boolean verified = checksum.verify(in, expectedChecksum);
+            metrics.addElapsed("install.checksumMillis", checksumStart);
+
+            if (!verified) {
+                throw new RuntimeException(
+                        String.format("Maven distribution '%s' failed to verify against '%s'.", distributionUri, checksumUri(checksum, distributionUri)));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private String sha256(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+
+        try {
+            return Checksum.SHA256.generate(in);
+        } finally {
+            in.close();
+        }
+    }
+
     private List<File> listDirs(File distDir) {
         List<File> dirs = new ArrayList<File>();
 	
@@ -227,11 +772,21 @@ public class Installer {
         return false;
     }
 
-    private boolean deleteDir(File dir) {
+    static boolean deleteDir(File dir) {
 	if (dir == null) {
 	    throw new IllegalArgumentException("Cannot delete null directory");
 	}
 
+        WrapperEvent event = WrapperEvents.begin(WrapperEvents.Type.DELETE_DIR, dir.getAbsolutePath());
+
+        try {
+            return deleteDirContents(dir);
+        } finally {
+            event.commit();
+        }
+    }
+
+    private static boolean deleteDirContents(File dir) {
 	Deque<File> fileDeque = new LinkedList<File>();
 	File[] currentFileList;
 	fileDeque.offerFirst(dir);
@@ -259,11 +814,22 @@ public class Installer {
 	return true;
     }
 
-    private boolean deleteFile(File file) {
+    private static boolean deleteFile(File file) {
 	return file != null && file.exists() && file.delete();
     }
     
     public void unzip(File zip, File dest) throws IOException {
+        WrapperEvent event = WrapperEvents.begin(WrapperEvents.Type.UNZIP, zip.getAbsolutePath());
+
+        try {
+            unzipEntries(zip, dest);
+        } finally {
+            event.setBytes(zip.length());
+            event.commit();
+        }
+    }
+
+    private void unzipEntries(File zip, File dest) throws IOException {
         Enumeration<? extends ZipEntry> entries;
         ZipFile zipFile;
 
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class realm that the bin/m2.conf of a Maven home sets up, so that the
+ * class world can be built without the classworlds launcher. The configuration
+ * is parsed once per install and cached next to the Maven home, along with the
+ * size and modification time of m2.conf, the modification times of the
+ * directories it lists and the system properties it reads, so that later
+ * starts neither parse m2.conf nor list the lib directories while none of them
+ * changed.
+ * <p>
+ * Only the configurations of the Maven distributions are supported: a single
+ * realm, loading files and globs, with {@code set ... default} properties.
+ * Anything else, such as imports or properties read from files, is left to the
+ * classworlds launcher.
+ */
+class LaunchConfiguration {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(LaunchConfiguration.class.getName());
+
+    static final String M2_CONF_PATH = "bin/m2.conf";
+
+    static final String CACHE_FILE_NAME = "launch-configuration.cache";
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final String CACHE_HEADER = "# maven-wrapper launch configuration 1";
+
+    private static final String MAIN_PREFIX = "main is";
+    private static final String SET_PREFIX = "set";
+    private static final String LOAD_PREFIX = "load";
+    private static final String OPTIONALLY_PREFIX = "optionally";
+    private static final String FROM_SEPARATOR = " from";
+    private static final String DEFAULT_SEPARATOR = " default";
+
+    /**
+     * Files modified less than this long before the cache is written may be
+     * modified again without changing their modification time, so they are
+     * not cached yet.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private String mainClass;
+
+    private String mainRealm;
+
+    private String realm;
+
+    private final Map<String, String> defaults = new LinkedHashMap<String, String>();
+
+    private final List<String> loadFiles = new ArrayList<String>();
+
+    private final List<String> loadUrls = new ArrayList<String>();
+
+    /**
+     * The system properties the configuration read, with their values or null
+     * if they were not set.
+     */
+    private final Map<String, String> properties = new LinkedHashMap<String, String>();
+
+    /**
+     * The modification times of m2.conf and of the files and directories it
+     * lists, 0 for the ones that do not exist.
+     */
+    private final Map<String, Long> modificationTimes = new LinkedHashMap<String, Long>();
+
+    private long confLength;
+
+    private LaunchConfiguration() {
+    }
+
+    /**
+     * Returns the launch configuration of the given Maven home, from its cache
+     * if it is up to date. Returns null if m2.conf cannot be read or is not
+     * supported.
+     */
+    static LaunchConfiguration load(File mavenHome) {
+        File confFile = new File(mavenHome, M2_CONF_PATH);
+        File cacheFile = new File(mavenHome.getParentFile(), CACHE_FILE_NAME);
+        LaunchConfiguration configuration = read(cacheFile, confFile);
+
+        if (configuration != null) {
+            return configuration;
+        }
+
+        try {
+            configuration = parse(confFile);
+        } catch (IOException e) {
+            LOG.fine(String.format("Could not read %s: %s", confFile, e.getMessage()));
+            return null;
+        }
+
+        if (configuration != null) {
+            configuration.write(cacheFile);
+        }
+
+        return configuration;
+    }
+
+    /**
+     * Parses the given m2.conf the way the classworlds launcher does. Returns
+     * null if it is not supported.
+     */
+    static LaunchConfiguration parse(File confFile) throws IOException {
+        LaunchConfiguration configuration = new LaunchConfiguration();
+        configuration.confLength = confFile.length();
+        configuration.stat(confFile);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(confFile), ENCODING));
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+
+                if (!configuration.parseLine(line)) {
+                    LOG.fine(String.format("Unsupported configuration in %s: %s", confFile, line));
+                    return null;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        if (configuration.mainClass == null || configuration.realm == null || !configuration.realm.equals(configuration.mainRealm)) {
+            return null;
+        }
+
+        return configuration;
+    }
+
+    /**
+     * Parses a line of m2.conf, returning false if it is not supported or would
+     * make the launcher fail.
+     */
+    private boolean parseLine(String line) {
+        if (line.startsWith("[")) {
+            int end = line.indexOf(']');
+
+            if (realm != null || end < 0) {
+                return false;
+            }
+
+            realm = line.substring(1, end);
+            return true;
+        }
+
+        if (line.startsWith(MAIN_PREFIX)) {
+            int from = line.indexOf(FROM_SEPARATOR, MAIN_PREFIX.length());
+
+            if (mainClass != null || from < 0) {
+                return false;
+            }
+
+            mainClass = filter(line.substring(MAIN_PREFIX.length(), from).trim());
+            mainRealm = filter(line.substring(from + FROM_SEPARATOR.length()).trim());
+            return mainClass != null && mainRealm != null;
+        }
+
+        if (line.startsWith(SET_PREFIX)) {
+            String conf = line.substring(SET_PREFIX.length()).trim();
+            int defaultIndex = conf.indexOf(DEFAULT_SEPARATOR);
+
+            if (defaultIndex < 0) {
+                return false;
+            }
+
+            String name = conf.substring(0, defaultIndex).trim();
+
+            // properties read from files are left to the launcher
+            if (name.indexOf(' ') >= 0) {
+                return false;
+            }
+
+            String value = filter(conf.substring(defaultIndex + DEFAULT_SEPARATOR.length()).trim());
+
+            if (value == null) {
+                return false;
+            }
+
+            if (property(name) == null) {
+                defaults.put(name, value);
+            }
+
+            return true;
+        }
+
+        if (line.startsWith(LOAD_PREFIX)) {
+            return realm != null && load(filter(line.substring(LOAD_PREFIX.length()).trim()), false);
+        }
+
+        if (line.startsWith(OPTIONALLY_PREFIX)) {
+            return realm != null && load(filter(line.substring(OPTIONALLY_PREFIX.length()).trim()), true);
+        }
+
+        return false;
+    }
+
+    private boolean load(String path, boolean optionally) {
+        if (path == null) {
+            return false;
+        }
+
+        if (path.indexOf('*') >= 0) {
+            return loadGlob(new File(path), optionally);
+        }
+
+        File file = new File(path);
+        stat(file);
+
+        if (file.exists()) {
+            loadFiles.add(file.getAbsolutePath());
+            loadUrls.add(null);
+            return true;
+        }
+
+        try {
+            loadUrls.add(new URL(path).toString());
+            loadFiles.add(null);
+            return true;
+        } catch (MalformedURLException e) {
+            return optionally;
+        }
+    }
+
+    private boolean loadGlob(File glob, boolean optionally) {
+        File dir = glob.getParentFile();
+        String name = glob.getName();
+        int star = name.indexOf('*');
+        final String prefix = name.substring(0, star);
+        final String suffix = name.substring(star + 1);
+
+        stat(dir);
+
+        if (!dir.exists()) {
+            return optionally;
+        }
+
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && name.endsWith(suffix);
+            }
+        });
+
+        if (files == null) {
+            return false;
+        }
+
+        // in the order classworlds loads them
+        Arrays.sort(files);
+
+        for (File file : files) {
+            loadFiles.add(file.getAbsolutePath());
+            loadUrls.add(null);
+        }
+
+        return true;
+    }
+
+    /**
+     * Replaces the ${property} references of the given text, returning null if
+     * a property is not set, which fails the launcher.
+     */
+    private String filter(String text) {
+        StringBuilder result = new StringBuilder();
+        int cursor = 0;
+
+        while (true) {
+            int start = text.indexOf("${", cursor);
+            int end = start < 0 ? -1 : text.indexOf('}', start + 2);
+
+            if (end < 0) {
+                return result.append(text.substring(cursor)).toString();
+            }
+
+            String value = property(text.substring(start + 2, end));
+
+            if (value == null) {
+                return null;
+            }
+
+            result.append(text.substring(cursor, start)).append(value);
+            cursor = end + 1;
+        }
+    }
+
+    /**
+     * Returns the value of the given property, recording the system
+     * properties read.
+     */
+    private String property(String name) {
+        if (defaults.containsKey(name)) {
+            return defaults.get(name);
+        }
+
+        String value = System.getProperty(name);
+
+        if (!properties.containsKey(name)) {
+            properties.put(name, value);
+        }
+
+        return value;
+    }
+
+    private void stat(File file) {
+        modificationTimes.put(file.getAbsolutePath(), file.lastModified());
+    }
+
+    String getMainClass() {
+        return mainClass;
+    }
+
+    String getRealm() {
+        return realm;
+    }
+
+    /**
+     * Returns the system properties to set before launching, for the ones that
+     * were not set.
+     */
+    Map<String, String> getDefaults() {
+        return defaults;
+    }
+
+    /**
+     * Returns the URLs of the realm, in the order of m2.conf.
+     */
+    List<URL> getUrls() throws MalformedURLException {
+        List<URL> urls = new ArrayList<URL>();
+
+        for (int i = 0; i < loadFiles.size(); i++) {
+            urls.add(loadFiles.get(i) != null ? new File(loadFiles.get(i)).toURI().toURL() : new URL(loadUrls.get(i)));
+        }
+
+        return urls;
+    }
+
+    /**
+     * Reads the cached configuration. Returns null if there is none, or if it
+     * is corrupt, or m2.conf, the files and directories it lists or the system
+     * properties it reads changed since it was written.
+     */
+    static LaunchConfiguration read(File cacheFile, File confFile) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        LaunchConfiguration configuration = new LaunchConfiguration();
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), ENCODING));
+
+            try {
+                if (!CACHE_HEADER.equals(reader.readLine())) {
+                    return null;
+                }
+
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    configuration.readLine(line.split("\t", 3));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        return configuration.isUpToDate(confFile) ? configuration : null;
+    }
+
+    private void readLine(String[] fields) throws IOException {
+        String type = fields[0];
+
+        if ("conf".equals(type)) {
+            confLength = Long.parseLong(fields[1]);
+        } else if ("main".equals(type)) {
+            mainClass = fields[1];
+            mainRealm = fields[2];
+            realm = mainRealm;
+        } else if ("stat".equals(type)) {
+            modificationTimes.put(fields[2], Long.parseLong(fields[1]));
+        } else if ("property".equals(type)) {
+            properties.put(fields[1], fields.length > 2 ? fields[2] : null);
+        } else if ("default".equals(type)) {
+            defaults.put(fields[1], fields[2]);
+        } else if ("file".equals(type)) {
+            loadFiles.add(fields[1]);
+            loadUrls.add(null);
+        } else if ("url".equals(type)) {
+            loadUrls.add(fields[1]);
+            loadFiles.add(null);
+        } else {
+            throw new IOException("Corrupt launch configuration.");
+        }
+    }
+
+    private boolean isUpToDate(File confFile) {
+        if (mainClass == null || confFile.length() != confLength || !modificationTimes.containsKey(confFile.getAbsolutePath())) {
+            return false;
+        }
+
+        for (Map.Entry<String, Long> entry : modificationTimes.entrySet()) {
+            if (new File(entry.getKey()).lastModified() != entry.getValue()) {
+                return false;
+            }
+        }
+
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            String value = System.getProperty(entry.getKey());
+
+            if (value == null ? entry.getValue() != null : !value.equals(entry.getValue())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the cache unless m2.conf or a directory it lists was modified too
+     * recently to be told apart from a later change. Failures are ignored as
+     * the cache only saves time.
+     */
+    void write(File cacheFile) {
+        long now = System.currentTimeMillis();
+
+        for (long modificationTime : modificationTimes.values()) {
+            if (modificationTime > now - RACY_MILLIS) {
+                return;
+            }
+        }
+
+        StringBuilder content = new StringBuilder(CACHE_HEADER).append('\n');
+        content.append("conf\t").append(confLength).append('\n');
+        content.append("main\t").append(mainClass).append('\t').append(mainRealm).append('\n');
+
+        for (Map.Entry<String, Long> entry : modificationTimes.entrySet()) {
+            content.append("stat\t").append(entry.getValue()).append('\t').append(entry.getKey()).append('\n');
+        }
+
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            content.append("property\t").append(entry.getKey());
+
+            if (entry.getValue() != null) {
+                content.append('\t').append(entry.getValue());
+            }
+
+            content.append('\n');
+        }
+
+        for (Map.Entry<String, String> entry : defaults.entrySet()) {
+            content.append("default\t").append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+        }
+
+        for (int i = 0; i < loadFiles.size(); i++) {
+            content.append(loadFiles.get(i) != null ? "file\t" + loadFiles.get(i) : "url\t" + loadUrls.get(i)).append('\n');
+        }
+
+        // values spanning lines cannot be cached
+        if (content.toString().split("[\r\n]").length != countLines()) {
+            return;
+        }
+
+        try {
+            writeAtomically(content.toString(), cacheFile);
+        } catch (IOException e) {
+            LOG.fine(String.format("Could not write launch configuration %s: %s", cacheFile, e.getMessage()));
+        }
+    }
+
+    private int countLines() {
+        return 3 + modificationTimes.size() + properties.size() + defaults.size() + loadFiles.size();
+    }
+
+    private static void writeAtomically(String content, File file) throws IOException {
+        File tmpFile = File.createTempFile(file.getName() + "-", ".part", file.getParentFile());
+
+        try {
+            Writer out = new OutputStreamWriter(new FileOutputStream(tmpFile), ENCODING);
+
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+
+            if (!tmpFile.renameTo(file)) {
+                file.delete();
+
+                if (!tmpFile.renameTo(file)) {
+                    throw new IOException(String.format("Could not move %s to %s", tmpFile, file));
+                }
+            }
+        } finally {
+            tmpFile.delete();
+        }
+    }
+}
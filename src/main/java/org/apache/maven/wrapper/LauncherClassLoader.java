@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Class loader of the Maven launcher. It is registered as parallel capable, on
+ * Java 7 and later, so that classes can be loaded ahead of time by a background
+ * thread while the main thread loads others.
+ */
+class LauncherClassLoader extends URLClassLoader {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(LauncherClassLoader.class.getName());
+
+    static {
+        try {
+            Method registerAsParallelCapable = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            // protected, which reflection only lets subclasses call once accessible
+            registerAsParallelCapable.setAccessible(true);
+
+            if (!(Boolean) registerAsParallelCapable.invoke(null)) {
+                LOG.fine("Could not register the launcher class loader as parallel capable");
+            }
+        } catch (Exception e) {
+            // Java 6 loads classes under the loader lock
+            LOG.fine(String.format("Could not register the launcher class loader as parallel capable: %s", e));
+        }
+    }
+
+    LauncherClassLoader(URL[] urls, ClassLoader parent) {
+        super(urls, parent);
+    }
+
+    /**
+     * Loads, without initializing them, the given classes on a background
+     * thread. Classes which cannot be loaded are left to be reported by the
+     * thread which actually needs them.
+     */
+    void preload(final String... classNames) {
+        Thread preloader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (String className : classNames) {
+                    try {
+                        Class.forName(className, false, LauncherClassLoader.this);
+                    } catch (ClassNotFoundException e) {
+                        LOG.fine(String.format("Could not preload class %s: %s", className, e));
+                    } catch (LinkageError e) {
+                        LOG.fine(String.format("Could not preload class %s: %s", className, e));
+                    }
+                }
+            }
+        }, "maven-wrapper-preload");
+        preloader.setDaemon(true);
+        preloader.start();
+    }
+}
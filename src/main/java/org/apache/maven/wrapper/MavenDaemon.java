@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Long-lived JVM running the builds of one Maven distribution, so that
+ * consecutive builds skip the JVM start and the loading of Maven core and run
+ * on already compiled code. Maven is booted once from its {@code m2.conf} and
+ * every build goes through {@code MavenCli.doMain}, one build at a time.
+ *
+ * The daemon listens on the loopback interface only and serves clients that
+ * present the token of its registry file. It exits once idle for the number of
+ * minutes given by the {@value #IDLE_TIMEOUT_PROPERTY} system property.
+ */
+public class MavenDaemon {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(MavenDaemon.class.getName());
+
+    public static final String IDLE_TIMEOUT_PROPERTY = "maven.wrapper.daemon.idleTimeout";
+    private static final long DEFAULT_IDLE_TIMEOUT_MINUTES = 180;
+    private static final String LAUNCHER_CLASS = "org.codehaus.plexus.classworlds.launcher.Launcher";
+    private static final String CLASS_WORLD_CLASS = "org.codehaus.plexus.classworlds.ClassWorld";
+
+    private final Object world;
+    private final ClassLoader mainRealm;
+    private final Constructor<?> cliConstructor;
+    private final Method doMain;
+    private final String token = new BigInteger(130, new SecureRandom()).toString(32);
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println(String.format("Usage: java -cp maven-wrapper.jar %s <mavenHome> <registryFile>", MavenDaemon.class.getName()));
+            System.exit(1);
+        }
+
+        File registryFile = new File(args[1]);
+
+        // the daemon outlives the build that started it and has no console
+        PrintStream log = new PrintStream(new FileOutputStream(DaemonRegistry.logFile(registryFile), true), true);
+        System.setOut(log);
+        System.setErr(log);
+
+        long idleTimeoutMinutes = Long.getLong(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_MINUTES);
+        new MavenDaemon(new File(args[0])).serve(registryFile, idleTimeoutMinutes * 60L * 1000L);
+        System.exit(0);
+    }
+
+    MavenDaemon(File mavenHome) throws Exception {
+        File m2Conf = new File(mavenHome, "bin/m2.conf");
+        System.setProperty("maven.home", mavenHome.getAbsolutePath());
+        System.setProperty("classworlds.conf", m2Conf.getAbsolutePath());
+
+        URL[] urls = { BootstrapMainStarter.findLauncherJar(mavenHome).toURI().toURL() };
+        ClassLoader loader = new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+        Thread.currentThread().setContextClassLoader(loader);
+
+        Class<?> launcherClass = loader.loadClass(LAUNCHER_CLASS);
+        Object launcher = launcherClass.newInstance();
+        launcherClass.getMethod("setSystemClassLoader", ClassLoader.class).invoke(launcher, loader);
+        InputStream in = new FileInputStream(m2Conf);
+
+        try {
+            launcherClass.getMethod("configure", InputStream.class).invoke(launcher, in);
+        } finally {
+            in.close();
+        }
+
+        world = launcherClass.getMethod("getWorld").invoke(launcher);
+        mainRealm = (ClassLoader) launcherClass.getMethod("getMainRealm").invoke(launcher);
+        Class<?> cliClass = (Class<?>) launcherClass.getMethod("getMainClass").invoke(launcher);
+        cliConstructor = cliClass.getConstructor(loader.loadClass(CLASS_WORLD_CLASS));
+        doMain = cliClass.getMethod("doMain", String[].class, String.class, PrintStream.class, PrintStream.class);
+    }
+
+    void serve(File registryFile, long idleTimeoutMillis) throws IOException {
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        server.setSoTimeout((int) Math.min(Integer.MAX_VALUE, idleTimeoutMillis));
+        new DaemonRegistry(server.getLocalPort(), token).write(registryFile);
+        DaemonRegistry.spawnMarker(registryFile).delete();
+        LOG.info(String.format("Maven daemon listening on port %d", server.getLocalPort()));
+
+        try {
+            while (true) {
+                final Socket socket;
+
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    if (busy.get()) {
+                        continue;
+                    }
+
+                    LOG.info("Maven daemon idle, exiting");
+                    break;
+                }
+
+                Thread handler = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                }, "maven-daemon-client");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } finally {
+            DaemonRegistry registry = DaemonRegistry.read(registryFile);
+
+            // a newer daemon may have taken over the registry
+            if (registry != null && isToken(registry.getToken())) {
+                registryFile.delete();
+            }
+
+            server.close();
+        }
+    }
+
+    /**
+     * Compares the given value with the token in constant time, so that the
+     * time to reject a client does not tell how much of the token it guessed.
+     */
+    private boolean isToken(String value) throws IOException {
+        return value != null && MessageDigest.isEqual(token.getBytes(DaemonProtocol.CHARSET), value.getBytes(DaemonProtocol.CHARSET));
+    }
+
+    private void handle(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DaemonProtocol.Frame frame = DaemonProtocol.read(in);
+
+            if (frame.type != DaemonProtocol.TOKEN || !isToken(frame.text())) {
+                return;
+            }
+
+            String workingDirectory = null;
+            List<String> args = new ArrayList<String>();
+            Properties properties = new Properties();
+
+            while ((frame = DaemonProtocol.read(in)).type != DaemonProtocol.START) {
+                if (frame.type == DaemonProtocol.WORKING_DIRECTORY) {
+                    workingDirectory = frame.text();
+                } else if (frame.type == DaemonProtocol.ARGUMENT) {
+                    args.add(frame.text());
+                } else if (frame.type == DaemonProtocol.PROPERTY) {
+                    String property = frame.text();
+                    int separator = property.indexOf(DaemonProtocol.PROPERTY_SEPARATOR);
+                    properties.setProperty(property.substring(0, separator), property.substring(separator + 1));
+                }
+            }
+
+            if (!busy.compareAndSet(false, true)) {
+                DaemonProtocol.write(out, DaemonProtocol.REJECTED, "busy");
+                return;
+            }
+
+            int exitCode;
+
+            try {
+                DaemonProtocol.write(out, DaemonProtocol.ACCEPTED, "");
+                exitCode = build(args.toArray(new String[args.size()]), workingDirectory, properties, in, out);
+            } finally {
+                busy.set(false);
+            }
+
+            // the next build of the client may start as soon as it gets the exit code
+            DaemonProtocol.writeInt(out, DaemonProtocol.EXIT, exitCode);
+        } catch (Exception e) {
+            LOG.warning(String.format("Maven daemon request failed: %s", e));
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the client is gone already
+            }
+        }
+    }
+
+    private synchronized int build(String[] args, String workingDirectory, Properties properties, final DataInputStream in,
+                                   DataOutputStream out) throws Exception {
+        Properties systemProperties = (Properties) System.getProperties().clone();
+        InputStream systemIn = System.in;
+        final PipedOutputStream stdinSink = new PipedOutputStream();
+        PipedInputStream stdin = new PipedInputStream(stdinSink);
+        PrintStream stdout = new PrintStream(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDOUT), true);
+        PrintStream stderr = new PrintStream(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDERR), true);
+
+        Thread stdinPump = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    DaemonProtocol.Frame frame;
+
+                    while ((frame = DaemonProtocol.read(in)).type == DaemonProtocol.STDIN) {
+                        stdinSink.write(frame.data);
+                        stdinSink.flush();
+                    }
+                } catch (IOException e) {
+                    // the client closed its input or went away
+                } finally {
+                    try {
+                        stdinSink.close();
+                    } catch (IOException e) {
+                        // nothing left to read
+                    }
+                }
+            }
+        }, "maven-daemon-stdin");
+        stdinPump.setDaemon(true);
+        stdinPump.start();
+
+        try {
+            System.getProperties().putAll(properties);
+            System.setIn(stdin);
+            Thread.currentThread().setContextClassLoader(mainRealm);
+            Object cli = cliConstructor.newInstance(world);
+
+            return (Integer) doMain.invoke(cli, args, workingDirectory, stdout, stderr);
+        } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace(stderr);
+            return 1;
+        } finally {
+            stdout.flush();
+            stderr.flush();
+            System.setProperties(systemProperties);
+            System.setIn(systemIn);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs builds in a {@link MavenDaemon} for the distribution, forwarding the
+ * arguments, working directory, system properties and standard streams. A
+ * daemon only serves clients with the same Maven home, wrapper jar, JVM and
+ * environment, as the key of its registry file covers all of them.
+ *
+ * If no daemon is available the build runs in process, and a daemon is
+ * started in the background for the next builds.
+ */
+public class MavenDaemonClient {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(MavenDaemonClient.class.getName());
+
+    public static final String DAEMON_PATH = "wrapper/daemon";
+    private static final int CONNECT_TIMEOUT_MILLIS = 500;
+    private static final int ACCEPT_TIMEOUT_MILLIS = 5000;
+    private static final long SPAWN_TIMEOUT_MILLIS = 60L * 1000L;
+    private static final String STYLE_COLOR_PROPERTY = "style.color";
+
+    /** Environment variables that differ between shells without affecting the build. */
+    private static final List<String> IGNORED_ENVIRONMENT = Arrays.asList("PWD", "OLDPWD", "SHLVL", "_", "MAVEN_CMD_LINE_ARGS",
+            "MAVEN_PROJECTBASEDIR");
+
+    /** System properties describing the JVM rather than the build. */
+    private static final List<String> JVM_PROPERTY_PREFIXES = Arrays.asList("java.", "javax.", "jdk.", "sun.", "os.", "file.", "path.",
+            "line.", "user.", "awt.");
+
+    private final File registryDir;
+    private final File wrapperJar;
+
+    public MavenDaemonClient(File registryDir, File wrapperJar) {
+        this.registryDir = registryDir;
+        this.wrapperJar = wrapperJar;
+    }
+
+    /**
+     * Runs the build in the daemon and returns its exit code, or null if it has
+     * to run in process.
+     */
+    public Integer execute(String[] args, File mavenHome) {
+        List<String> jvmArgs = daemonJvmArgs();
+        File registryFile = registryFile(mavenHome, jvmArgs);
+        DaemonRegistry registry = DaemonRegistry.read(registryFile);
+
+        if (registry != null) {
+            try {
+                return run(registry, args, mavenHome);
+            } catch (IOException e) {
+                LOG.fine(String.format("Maven daemon on port %d is gone: %s", registry.getPort(), e.getMessage()));
+                registryFile.delete();
+            }
+        }
+
+        spawn(registryFile, jvmArgs, mavenHome);
+        return null;
+    }
+
+    /**
+     * Returns the registry file of the daemon serving builds of the given Maven
+     * home for this JVM.
+     */
+    File registryFile(File mavenHome) {
+        return registryFile(mavenHome, daemonJvmArgs());
+    }
+
+    private File registryFile(File mavenHome, List<String> jvmArgs) {
+        return DaemonRegistry.registryFile(registryDir, daemonKey(mavenHome, jvmArgs));
+    }
+
+    /**
+     * Returns the exit code of the build, or null if the daemon is busy. Fails
+     * if the daemon could not be reached.
+     */
+    private Integer run(DaemonRegistry registry, String[] args, File mavenHome) throws IOException {
+        InputStream stdin = System.in;
+        Socket socket = new Socket();
+
+        try {
+            socket.connect(new InetSocketAddress("127.0.0.1", registry.getPort()), CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            DaemonProtocol.write(out, DaemonProtocol.TOKEN, registry.getToken());
+            DaemonProtocol.write(out, DaemonProtocol.WORKING_DIRECTORY, System.getProperty("user.dir"));
+
+            for (String arg : buildArgs(args)) {
+                DaemonProtocol.write(out, DaemonProtocol.ARGUMENT, arg);
+            }
+
+            for (Map.Entry<String, String> property : buildProperties(mavenHome).entrySet()) {
+                DaemonProtocol.write(out, DaemonProtocol.PROPERTY, property.getKey() + DaemonProtocol.PROPERTY_SEPARATOR + property.getValue());
+            }
+
+            DaemonProtocol.write(out, DaemonProtocol.START, "");
+            DaemonProtocol.Frame reply = DaemonProtocol.read(in);
+
+            if (reply.type == DaemonProtocol.REJECTED) {
+                LOG.info(String.format("Maven daemon is %s, building in process", reply.text()));
+                return null;
+            }
+
+            if (reply.type != DaemonProtocol.ACCEPTED) {
+                throw new IOException("Unexpected reply from the Maven daemon");
+            }
+
+            // from here on the build runs in the daemon and must not be repeated
+            socket.setSoTimeout(0);
+            startStdinPump(stdin, out);
+            return pumpOutput(in);
+        } finally {
+            socket.close();
+        }
+    }
+
+    private int pumpOutput(DataInputStream in) {
+        try {
+            while (true) {
+                DaemonProtocol.Frame frame = DaemonProtocol.read(in);
+
+                if (frame.type == DaemonProtocol.STDOUT) {
+                    System.out.write(frame.data);
+                    System.out.flush();
+                } else if (frame.type == DaemonProtocol.STDERR) {
+                    System.err.write(frame.data);
+                    System.err.flush();
+                } else if (frame.type == DaemonProtocol.EXIT) {
+                    return frame.intValue();
+                }
+            }
+        } catch (EOFException e) {
+            System.err.println("The Maven daemon exited before the build completed.");
+        } catch (IOException e) {
+            System.err.println(String.format("Lost the connection to the Maven daemon: %s", e.getMessage()));
+        }
+
+        return 1;
+    }
+
+    private void startStdinPump(final InputStream in, final DataOutputStream out) {
+        Thread stdinPump = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[8192];
+
+                try {
+                    for (int read; (read = in.read(buffer)) != -1;) {
+                        DaemonProtocol.write(out, DaemonProtocol.STDIN, buffer, 0, read);
+                    }
+
+                    DaemonProtocol.write(out, DaemonProtocol.STDIN_CLOSED, "");
+                } catch (IOException e) {
+                    // the build is over
+                }
+            }
+        }, "maven-daemon-stdin");
+        stdinPump.setDaemon(true);
+        stdinPump.start();
+    }
+
+    /**
+     * Starts a daemon detached from the terminal, unless one is being started
+     * already. Only supported on Unix like systems.
+     */
+    private void spawn(File registryFile, List<String> jvmArgs, File mavenHome) {
+        if (System.getProperty("os.name").toLowerCase().startsWith("windows")) {
+            return;
+        }
+
+        File spawnMarker = DaemonRegistry.spawnMarker(registryFile);
+
+        try {
+            registryDir.mkdirs();
+
+            if (spawnMarker.exists() && System.currentTimeMillis() - spawnMarker.lastModified() < SPAWN_TIMEOUT_MILLIS) {
+                return;
+            }
+
+            spawnMarker.delete();
+
+            if (!spawnMarker.createNewFile()) {
+                return;
+            }
+
+            List<String> command = new ArrayList<String>();
+            // asynchronous commands of a non-interactive shell ignore SIGINT
+            command.addAll(Arrays.asList("/bin/sh", "-c", "nohup \"$0\" \"$@\" </dev/null >/dev/null 2>&1 &"));
+            command.add(new File(System.getProperty("java.home"), "bin/java").getAbsolutePath());
+            command.addAll(jvmArgs);
+            command.addAll(Arrays.asList("-cp", wrapperJar.getAbsolutePath(), MavenDaemon.class.getName(), mavenHome.getAbsolutePath(),
+                    registryFile.getAbsolutePath()));
+
+            Process process = new ProcessBuilder(command).start();
+            process.getOutputStream().close();
+            process.waitFor();
+            LOG.info("Started a Maven daemon for the next builds");
+        } catch (Exception e) {
+            LOG.warning(String.format("Could not start a Maven daemon: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the options of this JVM that the daemon should run with, leaving
+     * out the per-build properties and the options tied to this process.
+     */
+    private static List<String> daemonJvmArgs() {
+        List<String> jvmArgs = new ArrayList<String>();
+
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-Dmaven.multiModuleProjectDirectory=") || arg.startsWith("-Dmaven.home=") || arg.contains("SharedArchive")
+                    || arg.contains("ArchiveClassesAtExit") || arg.startsWith("-Xlog:cds") || arg.startsWith("-Xshare")
+                    || arg.startsWith("-agentlib:jdwp") || arg.startsWith("-Xrunjdwp")) {
+                continue;
+            }
+
+            jvmArgs.add(arg);
+        }
+
+        return jvmArgs;
+    }
+
+    /**
+     * Adds the color style, as the daemon cannot tell whether the output goes
+     * to a terminal.
+     */
+    private static List<String> buildArgs(String[] args) {
+        List<String> buildArgs = new ArrayList<String>(Arrays.asList(args));
+
+        for (String arg : args) {
+            if (arg.startsWith("-D" + STYLE_COLOR_PROPERTY + "=")) {
+                return buildArgs;
+            }
+        }
+
+        buildArgs.add(0, String.format("-D%s=%s", STYLE_COLOR_PROPERTY, System.console() != null ? "always" : "never"));
+        return buildArgs;
+    }
+
+    private static Map<String, String> buildProperties(File mavenHome) {
+        Map<String, String> properties = new TreeMap<String, String>();
+
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (!isJvmProperty(name)) {
+                properties.put(name, System.getProperty(name));
+            }
+        }
+
+        properties.put("maven.home", mavenHome.getAbsolutePath());
+        return properties;
+    }
+
+    private static boolean isJvmProperty(String name) {
+        for (String prefix : JVM_PROPERTY_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private String daemonKey(File mavenHome, List<String> jvmArgs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(mavenHome.getAbsolutePath()).append('\n');
+        sb.append(System.getProperty("java.home")).append('\n');
+        sb.append(wrapperJar.getAbsolutePath()).append(' ').append(wrapperJar.length()).append(' ').append(wrapperJar.lastModified()).append('\n');
+
+        for (String arg : jvmArgs) {
+            sb.append(arg).append('\n');
+        }
+
+        for (Map.Entry<String, String> variable : new TreeMap<String, String>(System.getenv()).entrySet()) {
+            if (!IGNORED_ENVIRONMENT.contains(variable.getKey())) {
+                sb.append(variable.getKey()).append('=').append(variable.getValue()).append('\n');
+            }
+        }
+
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+            return new BigInteger(1, messageDigest.digest(sb.toString().getBytes("UTF-8"))).toString(32);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not hash the daemon key.", e);
+        }
+    }
+}
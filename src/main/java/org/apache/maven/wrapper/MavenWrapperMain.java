@@ -21,13 +21,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Map;
 import java.util.Properties;
-import java.util.logging.LogManager;
-import java.util.logging.Logger;
 
 import org.apache.maven.wrapper.cli.CommandLineParser;
+import org.apache.maven.wrapper.cli.ParsedCommandLine;
 import org.apache.maven.wrapper.cli.SystemPropertiesCommandLineConverter;
+import org.apache.maven.wrapper.cli.SystemPropertiesScanner;
 
 /**
  * @author Hans Dockter
@@ -37,49 +36,75 @@ public class MavenWrapperMain {
     public static final String MAVEN_PROPERTIES_FILENAME = "maven.properties";
     public static final String MAVEN_USER_HOME_PROPERTY_KEY = "maven.user.home";
     public static final String MAVEN_USER_HOME_ENV_KEY = "MAVEN_USER_HOME";
-    private static final String LOGGING_PROPERTIES_PATH = "maven_wrapper_logging.properties";
+    private static final String OFFLINE_OPTION = "o";
+    private static final String OFFLINE_LONG_OPTION = "offline";
 
-    static {
-	setupLogging(LOGGING_PROPERTIES_PATH);
-    }
-    
     public static void main(String[] args) throws Exception {	
         File wrapperJar = wrapperJar();
         File propertiesFile = wrapperProperties(wrapperJar);
         File rootDir = rootDir(wrapperJar);
 
+        SystemPropertiesScanner scanner = new SystemPropertiesScanner(OFFLINE_OPTION, OFFLINE_LONG_OPTION);
         Properties systemProperties = System.getProperties();
-        systemProperties.putAll(parseSystemPropertiesFromArgs(args));
-        addSystemProperties(rootDir);
+        boolean offline;
 
-        WrapperExecutor wrapperExecutor = WrapperExecutor.forWrapperPropertiesFile(propertiesFile);
-        wrapperExecutor.execute(args, new Installer(new DefaultDownloader("mvnw", wrapperVersion()), new PathAssembler(mavenUserHome())),
-                new BootstrapMainStarter());
-    }
+        if (scanner.scan(args)) {
+            systemProperties.putAll(scanner.getSystemProperties());
+            offline = scanner.isFlagPresent();
+        } else {
+            SystemPropertiesCommandLineConverter converter = new SystemPropertiesCommandLineConverter();
+            ParsedCommandLine commandLine = parseCommandLine(converter, args);
+            systemProperties.putAll(converter.convert(commandLine));
+            offline = commandLine.hasOption(OFFLINE_OPTION);
+        }
 
-    private static void setupLogging(String logConfigPath) {
-	ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-        InputStream inputStream = classLoader.getResourceAsStream(logConfigPath);
-	
-        try {
-            LogManager.getLogManager().readConfiguration(inputStream);
-        } catch (final IOException e) {
-            Logger.getAnonymousLogger().severe(String.format("Could not load default %s file", logConfigPath));
-            Logger.getAnonymousLogger().severe(e.getMessage());
+        File snapshotFile = WrapperSnapshot.snapshotFile(mavenUserHome(), propertiesFile);
+        File userProperties = new File(mavenUserHome(), MAVEN_PROPERTIES_FILENAME);
+        File projectProperties = new File(rootDir, MAVEN_PROPERTIES_FILENAME);
+        WrapperSnapshot snapshot = WrapperSnapshot.read(snapshotFile, wrapperJar, propertiesFile, userProperties, projectProperties);
+        boolean snapshotStale = snapshot == null;
+
+        if (snapshotStale) {
+            snapshot = WrapperSnapshot.parse(wrapperJar, propertiesFile, userProperties, projectProperties, wrapperVersion());
+        }
+
+        systemProperties.putAll(snapshot.getUserProperties());
+        systemProperties.putAll(snapshot.getProjectProperties());
+
+        WrapperMetrics metrics = new WrapperMetrics();
+        WrapperExecutor wrapperExecutor = WrapperExecutor.forWrapperProperties(propertiesFile, snapshot.getWrapperProperties());
+
+        // only snapshot a configuration that was read successfully
+        if (snapshotStale) {
+            snapshot.write(snapshotFile);
+        }
+
+        if (offline) {
+            wrapperExecutor.getConfiguration().setOffline(true);
         }
+
+        MavenDaemonClient daemonClient = null;
+
+        if (wrapperExecutor.getConfiguration().isDaemon()) {
+            daemonClient = new MavenDaemonClient(new File(mavenUserHome(), MavenDaemonClient.DAEMON_PATH), wrapperJar);
+        }
+
+        wrapperExecutor.execute(args,
+                new Installer(new DefaultDownloader("mvnw", snapshot.getWrapperVersion(), metrics), new PathAssembler(mavenUserHome()), metrics),
+                new BootstrapMainStarter(metrics, daemonClient, wrapperExecutor.getConfiguration().isDirectLaunch()));
     }
 
-    private static Map<String, String> parseSystemPropertiesFromArgs(String[] args) {
-        SystemPropertiesCommandLineConverter converter = new SystemPropertiesCommandLineConverter();
+    /**
+     * Parses the system properties and the offline flag, which Maven accepts
+     * anywhere on the command line, ignoring all other options.
+     */
+    private static ParsedCommandLine parseCommandLine(SystemPropertiesCommandLineConverter converter, String[] args) {
         CommandLineParser commandLineParser = new CommandLineParser();
         converter.configure(commandLineParser);
+        commandLineParser.option(OFFLINE_OPTION, OFFLINE_LONG_OPTION);
         commandLineParser.allowUnknownOptions();
-        return converter.convert(commandLineParser.parse(args));
-    }
-
-    private static void addSystemProperties(File rootDir) {
-        System.getProperties().putAll(SystemPropertiesHandler.getSystemProperties(new File(mavenUserHome(), MAVEN_PROPERTIES_FILENAME)));
-        System.getProperties().putAll(SystemPropertiesHandler.getSystemProperties(new File(rootDir, MAVEN_PROPERTIES_FILENAME)));
+        commandLineParser.allowMixedSubcommandsAndOptions();
+        return commandLineParser.parse(args);
     }
 
     private static File rootDir(File wrapperJar) {
@@ -133,7 +158,7 @@ public class MavenWrapperMain {
         }
     }
 
-    private static File mavenUserHome() {
+    static File mavenUserHome() {
         String mavenUserHome = System.getProperty(MAVEN_USER_HOME_PROPERTY_KEY);
         if (mavenUserHome != null) {
             return new File(mavenUserHome);
@@ -16,16 +16,15 @@
 package org.apache.maven.wrapper;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
@@ -64,6 +63,9 @@ public class MavenWrapperMojo extends AbstractMojo implements Contextualizable {
     public static final String DISTRIBUTION_URL_PROPERTY = "distributionUrl";
     public static final String VERIFY_DOWNLOAD_PROPERTY = "verifyDownload";
     public static final String CHECKSUM_ALGORITHM_PROPERTY = "checksumAlgorithm";
+    public static final String JVM_PROFILE_PROPERTY = "jvmProfile";
+    public static final String JVM_PROFILE_FAST_START = "fast-start";
+    public static final String JVM_PROFILE_THROUGHPUT = "throughput";
     public static final String SCRIPT_FILENAME_WINDOWS = "mvnw.bat";
     public static final String SCRIPT_FILENAME_UNIX = "mvnw";
 
@@ -129,6 +131,14 @@ public class MavenWrapperMojo extends AbstractMojo implements Contextualizable {
     /** The checksum algorithm. */
     private String checksumAlgorithm;
 
+    @Parameter(property = "jvmProfile", required = false)
+    /**
+     * The JVM options profile the wrapper scripts start Maven with, unless
+     * overridden by the MAVEN_WRAPPER_JVM_PROFILE environment variable:
+     * fast-start for short builds or throughput for long ones.
+     */
+    private String jvmProfile;
+
     /**
      * Sets the plugin descriptor (Exposed for unit tests)
      *
@@ -139,6 +149,15 @@ public class MavenWrapperMojo extends AbstractMojo implements Contextualizable {
         this.plugin = plugin;
     }
 
+    /**
+     * Returns the plugin descriptor
+     *
+     * @return The plugin descriptor
+     */
+    protected PluginDescriptor getPlugin() {
+        return plugin;
+    }
+
     /**
      * Sets the Maven version (Exposed for unit tests only)
      *
@@ -158,6 +177,16 @@ public class MavenWrapperMojo extends AbstractMojo implements Contextualizable {
         return mavenVersion;
     }
 
+    /**
+     * Sets the JVM options profile (Exposed for unit tests only)
+     *
+     * @param jvmProfile
+     *            The JVM options profile of the wrapper scripts
+     */
+    protected void setJvmProfile(String jvmProfile) {
+        this.jvmProfile = jvmProfile;
+    }
+
     /**
      * Returns the wrapper folder (Exposed for unit tests only)
      *
@@ -318,9 +347,9 @@ public class MavenWrapperMojo extends AbstractMojo implements Contextualizable {
             }
 
             File launcherFile = new File(baseDir, LAUNCHER_FILE_BASE_NAMES[i]);
-            streamsToFile(streams, launcherFile);
+            writeIfChanged(readStreams(streams), launcherFile);
 
-            if (!launcherFile.setExecutable(true)) {
+            if (!launcherFile.canExecute() && !launcherFile.setExecutable(true)) {
                 getLog().warn("Could not set executable flag on file: " + launcherFile.getAbsolutePath());
             }
         }
@@ -347,6 +376,13 @@ public class MavenWrapperMojo extends AbstractMojo implements Contextualizable {
             props.put(CHECKSUM_ALGORITHM_PROPERTY, checksum.toString());
         }
 
+        if (jvmProfile != null && jvmProfile.length() > 0) {
+            if (!JVM_PROFILE_FAST_START.equals(jvmProfile) && !JVM_PROFILE_THROUGHPUT.equals(jvmProfile)) {
+                throw new MojoExecutionException(String.format("Unsupported JVM profile: %s", jvmProfile));
+            }
+            props.put(JVM_PROFILE_PROPERTY, jvmProfile);
+        }
+
         StringBuilder distlistsb = new StringBuilder();
         	
         for (final String effectiveBaseDistributionUrl : effectiveBaseDistributionUrls) {
@@ -364,66 +400,121 @@ public class MavenWrapperMojo extends AbstractMojo implements Contextualizable {
         distlistsb.setLength(distlistsb.length() - 1);        
 
         props.put(DISTRIBUTION_URL_PROPERTY, distlistsb.toString());
+        completeWrapperProperties(props, wrapperSupportFolder);
 
-        File file = new File(wrapperSupportFolder, WRAPPER_PROPERTIES_FILE_NAME);
+        copyIfChanged(pluginArtifact.getFile(), new File(wrapperSupportFolder, WRAPPER_JAR_FILE_NAME));
+        writeIfChanged(storeProperties(props), new File(wrapperSupportFolder, WRAPPER_PROPERTIES_FILE_NAME));
+    }
 
-        FileOutputStream fileOut = null;
-        InputStream is = null;
+    /**
+     * Called with the wrapper properties before they are written, so that goals
+     * generating a variant of the wrapper can amend them.
+     *
+     * @param props
+     *            the wrapper properties
+     * @param wrapperSupportFolder
+     *            the folder the wrapper jar and properties are written to
+     */
+    protected void completeWrapperProperties(Properties props, File wrapperSupportFolder) throws MojoExecutionException, IOException {
+    }
 
-        try {
-            is = new FileInputStream(pluginArtifact.getFile());
-            streamsToFile(new InputStream[] { is }, new File(wrapperSupportFolder, WRAPPER_JAR_FILE_NAME));
-            fileOut = new FileOutputStream(file);
-            props.store(fileOut, WRAPPER_PROPERTIES_COMMENTS);
+    /**
+     * Stores the properties sorted and without the date comment, so that the
+     * same configuration always produces the same bytes. Stored to a stream,
+     * characters outside of ISO-8859-1 are written as unicode escapes.
+     */
+    static byte[] storeProperties(Properties props) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        props.store(out, null);
 
-        } finally {
-            if (fileOut != null) {
-                IOUtil.close(fileOut);
-            }
+        List<String> entries = new ArrayList<String>();
 
-            if (is != null) {
-                IOUtil.close(is);
+        for (String line : out.toString("ISO-8859-1").split("\r?\n")) {
+            // keys starting with # are escaped, so these are the comments
+            if (line.length() > 0 && !line.startsWith("#")) {
+                entries.add(line);
             }
         }
+
+        Collections.sort(entries);
+
+        StringBuilder sb = new StringBuilder("#").append(WRAPPER_PROPERTIES_COMMENTS).append('\n');
+
+        for (String entry : entries) {
+            sb.append(entry).append('\n');
+        }
+
+        return sb.toString().getBytes("ISO-8859-1");
     }
 
-    private static void streamsToFile(InputStream[] streams, File filePath) throws IOException {
-        FileChannel outChannel = null;
-        ReadableByteChannel inChannel = null;
-        FileOutputStream fos = null;
+    /**
+     * Writes the content unless the file already holds the same bytes, leaving
+     * its timestamp alone for the build caches and the working tree.
+     */
+    private void writeIfChanged(byte[] content, File file) throws IOException {
+        if (isUnchanged(file, content.length, Checksum.SHA256.generate(new ByteArrayInputStream(content)))) {
+            getLog().debug("Unchanged: " + file.getAbsolutePath());
+            return;
+        }
+
+        FileOutputStream out = new FileOutputStream(file);
 
         try {
-            fos = new FileOutputStream(filePath);
-            outChannel = fos.getChannel();
-
-            for (InputStream stream : streams) {
-                try {
-                    inChannel = Channels.newChannel(stream);
-                    ByteBuffer buffer = ByteBuffer.allocate(1024);
-
-                    while (inChannel.read(buffer) >= 0 || buffer.position() > 0) {
-                        buffer.flip();
-                        outChannel.write(buffer);
-                        buffer.clear();
-                    }
-                } finally {
-                    if (stream != null) {
-                        IOUtil.close(stream);
-                    }
-
-                    if (inChannel != null) {
-                        inChannel.close();
-                    }
-                }
-            }
+            out.write(content);
         } finally {
-            if (fos != null) {
-                IOUtil.close(fos);
+            IOUtil.close(out);
+        }
+    }
+
+    private void copyIfChanged(File source, File target) throws IOException {
+        if (isUnchanged(target, source.length(), sha256(source))) {
+            getLog().debug("Unchanged: " + target.getAbsolutePath());
+            return;
+        }
+
+        FileInputStream in = new FileInputStream(source);
+        FileOutputStream out = new FileOutputStream(target);
+
+        try {
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long size = inChannel.size();
+            long position = 0;
+
+            while (position < size) {
+                position += inChannel.transferTo(position, size - position, outChannel);
             }
+        } finally {
+            IOUtil.close(in);
+            IOUtil.close(out);
+        }
+    }
+
+    private static boolean isUnchanged(File file, long length, String sha256) throws IOException {
+        return file.isFile() && file.length() == length && sha256.equals(sha256(file));
+    }
+
+    private static String sha256(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
 
-            if (outChannel != null) {
-                outChannel.close();
+        try {
+            return Checksum.SHA256.generate(in);
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    private static byte[] readStreams(InputStream[] streams) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        for (InputStream stream : streams) {
+            try {
+                IOUtil.copy(stream, content);
+            } finally {
+                IOUtil.close(stream);
             }
         }
+
+        return content.toByteArray();
     }
 }
@@ -16,9 +16,14 @@
 package org.apache.maven.wrapper;
 
 import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.net.URI;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * @author Hans Dockter
@@ -28,6 +33,26 @@ public class PathAssembler {
 
     public static final String PROJECT_STRING = "PROJECT";
 
+    /**
+     * Looks for the distribution in the configured read-only shared stores
+     * first and installs it under the Maven user home when it is not found.
+     */
+    public static final String SHARED_STRING = "SHARED";
+
+    /**
+     * Directory, below the distribution and zip store paths, holding the
+     * content-addressed installs keyed by the SHA-256 of their archive.
+     */
+    public static final String CONTENT_ADDRESSED_PATH = "sha256";
+
+    /**
+     * Directory, next to the distribution path, holding the files shared by
+     * hard links between installed distributions.
+     */
+    public static final String BLOB_STORE_PATH = "blobs";
+
+    static final String FILE_SCHEME = "file";
+
     private File mavenUserHome;
 
     public PathAssembler() {
@@ -42,19 +67,112 @@ public class PathAssembler {
      * supplied configuration.
      */
     public LocalDistribution getDistribution(WrapperConfiguration configuration, URI distributionUrl) {
-        String baseName = getDistName(distributionUrl);
-        String distName = removeExtension(baseName);
-        String rootDirName = rootDirName(distName, distributionUrl);
+        return getDistribution(configuration, getDistName(distributionUrl), rootDirName(configuration, distributionUrl));
+    }
+
+    /**
+     * Determines the local locations of a content-addressed install of the
+     * distribution, i.e. keyed by the SHA-256 digest of its archive rather than
+     * by its URL.
+     */
+    public LocalDistribution getContentAddressedDistribution(WrapperConfiguration configuration, URI distributionUrl, String sha256) {
+        String rootDirName = CONTENT_ADDRESSED_PATH + "/" + sha256.toLowerCase(Locale.US);
+        return getDistribution(configuration, getDistName(distributionUrl), rootDirName);
+    }
+
+    /**
+     * Returns the blob store used to deduplicate the installed distributions. It
+     * lives next to the distribution path so that both are on the same file
+     * system.
+     */
+    public File getBlobStoreDir(WrapperConfiguration configuration) {
+        return new File(getDistributionsDir(configuration).getAbsoluteFile().getParentFile(), BLOB_STORE_PATH);
+    }
+
+    /**
+     * Returns the directory holding the {@link WrapperSnapshot}s of the wrapper
+     * configurations, or null if there is no Maven user home.
+     */
+    public File getSnapshotsDir() {
+        return mavenUserHome == null ? null : new File(mavenUserHome, WrapperSnapshot.SNAPSHOT_PATH);
+    }
+
+    /**
+     * Returns the directory all distributions are installed into.
+     */
+    public File getDistributionsDir(WrapperConfiguration configuration) {
+        return new File(getBaseDir(configuration.getDistributionBase()), configuration.getDistributionPath());
+    }
+
+    /**
+     * Returns the directory all distribution zips are downloaded into.
+     */
+    public File getZipsDir(WrapperConfiguration configuration) {
+        return new File(getBaseDir(configuration.getZipBase()), configuration.getZipPath());
+    }
+
+    private LocalDistribution getDistribution(WrapperConfiguration configuration, String baseName, String rootDirName) {
         File distDir = new File(getBaseDir(configuration.getDistributionBase()), configuration.getDistributionPath() + "/" + rootDirName);
         File distZip = new File(getBaseDir(configuration.getZipBase()), configuration.getZipPath() + "/" + rootDirName + "/" + baseName);
-        return new LocalDistribution(distDir, distZip);
+        return new LocalDistribution(distDir, distZip, getSharedDistributionDirs(configuration, rootDirName));
     }
 
-    private String rootDirName(String distName, URI distributionUrl) {
-        String urlHash = getMd5Hash(distributionUrl.toString());
+    private List<File> getSharedDistributionDirs(WrapperConfiguration configuration, String rootDirName) {
+        if (!SHARED_STRING.equals(configuration.getDistributionBase())) {
+            return Collections.emptyList();
+        }
+
+        List<File> sharedDistDirs = new ArrayList<File>();
+
+        for (File sharedStore : configuration.getSharedStorePaths()) {
+            sharedDistDirs.add(new File(sharedStore, configuration.getDistributionPath() + "/" + rootDirName));
+        }
+
+        return sharedDistDirs;
+    }
+
+    /**
+     * A local archive with a pinned checksum, such as the one of a bundled
+     * wrapper, is keyed by that checksum rather than by its location, so that
+     * all checkouts of a project share its install.
+     */
+    private String rootDirName(WrapperConfiguration configuration, URI distributionUrl) {
+        if (FILE_SCHEME.equals(distributionUrl.getScheme()) && configuration.getDistributionChecksum() != null) {
+            String distName = removeExtension(getDistName(distributionUrl));
+            String checksumHash = getMd5Hash(configuration.getDistributionChecksum().trim().toLowerCase(Locale.US));
+            return String.format("%s/%s", distName, checksumHash);
+        }
+
+        return rootDirName(distributionUrl);
+    }
+
+    /**
+     * Returns the directory, relative to the distribution and zip store paths,
+     * holding the distribution downloaded from the given URL. A local archive
+     * is also keyed by its size and modification time, so that an archive
+     * replaced in place gets its own install.
+     */
+    protected String rootDirName(URI distributionUrl) {
+        String distName = removeExtension(getDistName(distributionUrl));
+        String urlHash = getMd5Hash(archiveKey(distributionUrl));
         return String.format("%s/%s", distName, urlHash);
     }
 
+    private String archiveKey(URI distributionUrl) {
+        if (FILE_SCHEME.equals(distributionUrl.getScheme())) {
+            try {
+                File archive = new File(distributionUrl);
+                return archive.getCanonicalPath() + ":" + archive.length() + ":" + archive.lastModified();
+            } catch (IllegalArgumentException e) {
+                // e.g. a UNC path, keyed by its location
+            } catch (IOException e) {
+                // keyed by its location
+            }
+        }
+
+        return distributionUrl.toString();
+    }
+
     private String getMd5Hash(String string) {
         try {
             MessageDigest messageDigest = MessageDigest.getInstance("MD5");
@@ -84,7 +202,7 @@ public class PathAssembler {
     }
 
     private File getBaseDir(String base) {
-        if (base.equals(MAVEN_USER_HOME_STRING)) {
+        if (base.equals(MAVEN_USER_HOME_STRING) || base.equals(SHARED_STRING)) {
             return mavenUserHome;
         } else if (base.equals(PROJECT_STRING)) {
             return new File(System.getProperty("user.dir"));
@@ -98,9 +216,16 @@ public class PathAssembler {
 
         private final File distDir;
 
+        private final List<File> sharedDistDirs;
+
         public LocalDistribution(File distDir, File distZip) {
+            this(distDir, distZip, Collections.<File> emptyList());
+        }
+
+        public LocalDistribution(File distDir, File distZip, List<File> sharedDistDirs) {
             this.distDir = distDir;
             this.distZip = distZip;
+            this.sharedDistDirs = sharedDistDirs;
         }
 
         /**
@@ -116,5 +241,13 @@ public class PathAssembler {
         public File getZipFile() {
             return distZip;
         }
+
+        /**
+         * Returns the locations, in order of preference, where a pre-installed
+         * copy of the distribution may be found in a read-only shared store.
+         */
+        public List<File> getSharedDistributionDirs() {
+            return sharedDistDirs;
+        }
     }
 }
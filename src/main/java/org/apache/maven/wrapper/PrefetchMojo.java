@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+@Mojo(name = "prefetch", requiresProject = true)
+/**
+ * Downloads, verifies and installs the Maven distribution configured by a
+ * generated wrapper, so that the first mvnw call on a fresh machine or image
+ * does not pay for the download.
+ */
+public class PrefetchMojo extends AbstractMojo {
+
+    @Component
+    private PluginDescriptor plugin;
+
+    @Parameter(property = "wrapperDirectory", defaultValue = "${basedir}/maven")
+    /** The folder holding the wrapper jar and properties */
+    private String wrapperDirectory;
+
+    @Parameter(property = "mavenUserHome", required = false)
+    /**
+     * The Maven user home to install the distribution into. Defaults to the
+     * one mvnw uses.
+     */
+    private String mavenUserHome;
+
+    @Parameter(property = "layerDirectory", required = false)
+    /**
+     * A directory to export the distribution into instead, laid out as a Maven
+     * user home without the downloaded archive, to be copied into a container
+     * image layer as the Maven user home of the builds.
+     */
+    private String layerDirectory;
+
+    /**
+     * Sets the plugin descriptor (Exposed for unit tests)
+     *
+     * @param plugin
+     *            The plugin descriptor
+     */
+    protected void setPlugin(PluginDescriptor plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Sets the wrapper folder (Exposed for unit tests only)
+     *
+     * @param wrapperDirectory
+     *            the folder holding the wrapper properties
+     */
+    protected void setWrapperDirectory(String wrapperDirectory) {
+        this.wrapperDirectory = wrapperDirectory;
+    }
+
+    /**
+     * Sets the Maven user home (Exposed for unit tests only)
+     *
+     * @param mavenUserHome
+     *            the Maven user home to install the distribution into
+     */
+    protected void setMavenUserHome(String mavenUserHome) {
+        this.mavenUserHome = mavenUserHome;
+    }
+
+    /**
+     * Sets the layer directory (Exposed for unit tests only)
+     *
+     * @param layerDirectory
+     *            the directory to export the distribution into
+     */
+    protected void setLayerDirectory(String layerDirectory) {
+        this.layerDirectory = layerDirectory;
+    }
+
+    public void execute() throws MojoExecutionException {
+        File propertiesFile = new File(wrapperDirectory, MavenWrapperMojo.WRAPPER_PROPERTIES_FILE_NAME);
+
+        if (!propertiesFile.exists()) {
+            throw new MojoExecutionException(String.format("Wrapper properties file '%s' does not exist, run the wrapper goal first.", propertiesFile));
+        }
+
+        try {
+            WrapperConfiguration configuration = WrapperExecutor.forWrapperPropertiesFile(propertiesFile).getConfiguration();
+            WrapperMetrics metrics = new WrapperMetrics();
+            PathAssembler pathAssembler = new PathAssembler(layerDirectory != null ? new File(layerDirectory) : resolveMavenUserHome());
+            Installer installer = new Installer(new DefaultDownloader("mvnw", plugin.getVersion(), metrics), pathAssembler, metrics);
+            File mavenHome;
+
+            if (layerDirectory != null) {
+                mavenHome = new DistributionLayerExporter(installer, pathAssembler).export(configuration);
+            } else {
+                mavenHome = installer.createDist(configuration);
+            }
+
+            getLog().info("Installed Maven distribution into " + mavenHome.getAbsolutePath());
+        } catch (Exception e) {
+            throw new MojoExecutionException(String.format("Could not install the Maven distribution configured in '%s'.", propertiesFile), e);
+        }
+    }
+
+    /**
+     * Resolves the Maven user home like the wrapper does, unless it is
+     * configured.
+     */
+    private File resolveMavenUserHome() {
+        return mavenUserHome != null ? new File(mavenUserHome) : MavenWrapperMain.mavenUserHome();
+    }
+}
@@ -15,7 +15,9 @@
  */
 package org.apache.maven.wrapper;
 
+import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 public class WrapperConfiguration {
@@ -23,6 +25,26 @@ public class WrapperConfiguration {
 
     public static final String ALWAYS_DOWNLOAD_ENV = "MAVEN_WRAPPER_ALWAYS_DOWNLOAD";
 
+    public static final String SHARED_STORE_ENV = "MAVEN_WRAPPER_SHARED_STORE";
+
+    public static final String DEDUPE_ENV = "MAVEN_WRAPPER_DEDUPE";
+
+    public static final String OFFLINE_ENV = "MAVEN_WRAPPER_OFFLINE";
+
+    public static final String OFFLINE_PROPERTY = "maven.wrapper.offline";
+
+    public static final String DAEMON_ENV = "MAVEN_WRAPPER_DAEMON";
+
+    public static final String DAEMON_PROPERTY = "maven.wrapper.daemon";
+
+    public static final String DIRECT_LAUNCH_ENV = "MAVEN_WRAPPER_DIRECT_LAUNCH";
+
+    public static final String DIRECT_LAUNCH_PROPERTY = "maven.wrapper.directLaunch";
+
+    public static final String MAX_AGE_DAYS_ENV = "MAVEN_WRAPPER_MAX_AGE_DAYS";
+
+    public static final String MAX_SIZE_MB_ENV = "MAVEN_WRAPPER_MAX_SIZE_MB";
+
     private boolean alwaysUnpack = Boolean.parseBoolean(System.getenv(ALWAYS_UNPACK_ENV));
 
     private boolean alwaysDownload = Boolean.parseBoolean(System.getenv(ALWAYS_DOWNLOAD_ENV));
@@ -41,6 +63,59 @@ public class WrapperConfiguration {
 
     private Checksum checksumAlgorithm = null;
 
+    private String distributionChecksum = null;
+
+    private List<File> sharedStorePaths = parsePathList(System.getenv(SHARED_STORE_ENV));
+
+    private boolean contentAddressed = false;
+
+    private boolean dedupe = Boolean.parseBoolean(System.getenv(DEDUPE_ENV));
+
+    private boolean offline = Boolean.parseBoolean(System.getenv(OFFLINE_ENV)) || Boolean.getBoolean(OFFLINE_PROPERTY);
+
+    private boolean daemon = Boolean.parseBoolean(System.getenv(DAEMON_ENV)) || Boolean.getBoolean(DAEMON_PROPERTY);
+
+    private boolean directLaunch = Boolean.parseBoolean(System.getenv(DIRECT_LAUNCH_ENV)) || Boolean.getBoolean(DIRECT_LAUNCH_PROPERTY);
+
+    private long maxDistributionAgeDays = parseLimit(System.getenv(MAX_AGE_DAYS_ENV));
+
+    private long maxDistributionsSizeMb = parseLimit(System.getenv(MAX_SIZE_MB_ENV));
+
+    /**
+     * Splits a list of directories separated by commas or by the platform path
+     * separator.
+     */
+    public static List<File> parsePathList(String pathList) {
+        List<File> paths = new ArrayList<File>();
+
+        if (pathList == null) {
+            return paths;
+        }
+
+        for (String path : pathList.split("[," + File.pathSeparator + "]")) {
+            if (path.trim().length() > 0) {
+                paths.add(new File(path.trim()));
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * Parses an eviction limit, where 0 disables the limit.
+     */
+    public static long parseLimit(String limit) {
+        if (limit == null || limit.trim().length() == 0) {
+            return 0;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(limit.trim()));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException(String.format("Invalid limit '%s', expected a number.", limit), e);
+        }
+    }
+
     public boolean isAlwaysDownload() {
         return alwaysDownload;
     }
@@ -112,4 +187,91 @@ public class WrapperConfiguration {
     public void setChecksumAlgorithm(Checksum checksumAlgorithm) {
         this.checksumAlgorithm = checksumAlgorithm;
     }
+
+    /**
+     * Returns the checksum of the distribution archive pinned in the wrapper
+     * properties, or null if the published checksum is to be downloaded.
+     */
+    public String getDistributionChecksum() {
+        return distributionChecksum;
+    }
+
+    public void setDistributionChecksum(String distributionChecksum) {
+        this.distributionChecksum = distributionChecksum;
+    }
+
+    public List<File> getSharedStorePaths() {
+        return sharedStorePaths;
+    }
+
+    public void setSharedStorePaths(List<File> sharedStorePaths) {
+        this.sharedStorePaths = sharedStorePaths;
+    }
+
+    public boolean isContentAddressed() {
+        return contentAddressed;
+    }
+
+    public void setContentAddressed(boolean contentAddressed) {
+        this.contentAddressed = contentAddressed;
+    }
+
+    public boolean isDedupe() {
+        return dedupe;
+    }
+
+    public void setDedupe(boolean dedupe) {
+        this.dedupe = dedupe;
+    }
+
+    public long getMaxDistributionAgeDays() {
+        return maxDistributionAgeDays;
+    }
+
+    public void setMaxDistributionAgeDays(long maxDistributionAgeDays) {
+        this.maxDistributionAgeDays = maxDistributionAgeDays;
+    }
+
+    public long getMaxDistributionsSizeMb() {
+        return maxDistributionsSizeMb;
+    }
+
+    public void setMaxDistributionsSizeMb(long maxDistributionsSizeMb) {
+        this.maxDistributionsSizeMb = maxDistributionsSizeMb;
+    }
+
+    /**
+     * Returns true if distributions may only be resolved from the local stores
+     * and from file URIs.
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    /**
+     * Returns true if builds should run in a long-lived {@link MavenDaemon}.
+     */
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    public void setDaemon(boolean daemon) {
+        this.daemon = daemon;
+    }
+
+    /**
+     * Returns true if the Maven class world should be built from the cached
+     * bin/m2.conf of the install instead of by the classworlds launcher.
+     */
+    public boolean isDirectLaunch() {
+        return directLaunch;
+    }
+
+    public void setDirectLaunch(boolean directLaunch) {
+        this.directLaunch = directLaunch;
+    }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+/**
+ * A timed wrapper phase reported to the Java Flight Recorder. Obtained from
+ * {@link WrapperEvents#begin(WrapperEvents.Type, String)} already started.
+ */
+public interface WrapperEvent {
+    /**
+     * Starts the timing of the phase. Called by {@link WrapperEvents}.
+     */
+    void start(String subject);
+
+    void setBytes(long bytes);
+
+    /**
+     * Ends the phase and records it if a recording is running.
+     */
+    void commit();
+}
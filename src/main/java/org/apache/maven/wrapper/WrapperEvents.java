@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+/**
+ * Creates the Java Flight Recorder events of the wrapper phases. The event
+ * classes are only loaded when the running JVM ships {@code jdk.jfr}, on older
+ * JVMs every event is a no-op.
+ */
+public final class WrapperEvents {
+    private static final String EVENT_PACKAGE = "org.apache.maven.wrapper.jfr.";
+
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    private static final WrapperEvent NO_OP = new WrapperEvent() {
+        public void start(String subject) {
+        }
+
+        public void setBytes(long bytes) {
+        }
+
+        public void commit() {
+        }
+    };
+
+    public enum Type {
+        DOWNLOAD("DownloadEvent"),
+        CHECKSUM_VERIFY("ChecksumVerifyEvent"),
+        UNZIP("UnzipEvent"),
+        DELETE_DIR("DeleteDirEvent"),
+        BOOTSTRAP_CLASS_LOAD("BootstrapClassLoadEvent");
+
+        private final String className;
+
+        private volatile Class<?> eventClass;
+
+        Type(String className) {
+            this.className = className;
+        }
+
+        private Class<?> getEventClass() throws ClassNotFoundException {
+            if (eventClass == null) {
+                eventClass = Class.forName(EVENT_PACKAGE + className, true, WrapperEvents.class.getClassLoader());
+            }
+
+            return eventClass;
+        }
+    }
+
+    private WrapperEvents() {
+    }
+
+    /**
+     * Starts an event of the given type about the given subject (a URI, file or
+     * algorithm name).
+     */
+    public static WrapperEvent begin(Type type, String subject) {
+        if (!JFR_AVAILABLE) {
+            return NO_OP;
+        }
+
+        try {
+            WrapperEvent event = (WrapperEvent) type.getEventClass().newInstance();
+            event.start(subject);
+            return event;
+        } catch (Throwable e) {
+            return NO_OP;
+        }
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, WrapperEvents.class.getClassLoader());
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
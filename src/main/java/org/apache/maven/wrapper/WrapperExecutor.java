@@ -37,6 +37,12 @@ public class WrapperExecutor {
     public static final String VERIFY_DOWNLOAD_PROPERTY = "verifyDownload";
     public static final String CHECKSUM_ALGORITHM_PROPERTY = "checksumAlgorithm";
     public static final String CHECKSUM_URL_PROPERTY = "checksumUrl";
+    public static final String DISTRIBUTION_CHECKSUM_PROPERTY = "distributionChecksum";
+    public static final String SHARED_STORE_PATH_PROPERTY = "sharedStorePath";
+    public static final String CONTENT_ADDRESSED_PROPERTY = "contentAddressed";
+    public static final String DEDUPE_PROPERTY = "dedupe";
+    public static final String MAX_DISTRIBUTION_AGE_DAYS_PROPERTY = "maxDistributionAgeDays";
+    public static final String MAX_DISTRIBUTIONS_SIZE_MB_PROPERTY = "maxDistributionsSizeMb";
     private final Properties properties;
 
     private final File propertiesFile;
@@ -54,13 +60,31 @@ public class WrapperExecutor {
         return new WrapperExecutor(propertiesFile, new Properties());
     }
 
+    /**
+     * Creates the executor from the already loaded content of the given wrapper
+     * properties file.
+     */
+    public static WrapperExecutor forWrapperProperties(File propertiesFile, Properties properties) {
+        if (!propertiesFile.exists()) {
+            throw new RuntimeException(String.format("Wrapper properties file '%s' does not exist.", propertiesFile));
+        }
+
+        return new WrapperExecutor(propertiesFile, properties, false);
+    }
+
     WrapperExecutor(File propertiesFile, Properties properties) {
+        this(propertiesFile, properties, true);
+    }
+
+    private WrapperExecutor(File propertiesFile, Properties properties, boolean load) {
         this.properties = properties;
         this.propertiesFile = propertiesFile;
 
         if (propertiesFile.exists()) {
             try {
-                loadProperties(propertiesFile, properties);
+                if (load) {
+                    loadProperties(propertiesFile, properties);
+                }
 
 		config.setDistributionBase(getProperty(DISTRIBUTION_BASE_PROPERTY, config.getDistributionBase()));
                 config.setDistributionPath(getProperty(DISTRIBUTION_PATH_PROPERTY, config.getDistributionPath()));
@@ -68,9 +92,28 @@ public class WrapperExecutor {
                 config.setZipPath(getProperty(ZIP_STORE_PATH_PROPERTY, config.getZipPath()));
 		config.setDistributionUris(prepareDistributionUris());
 		config.setVerifyDownload(Boolean.valueOf(getProperty(VERIFY_DOWNLOAD_PROPERTY, "false")));		
+                config.setContentAddressed(Boolean.valueOf(getProperty(CONTENT_ADDRESSED_PROPERTY, "false")));
+
+                // a store configured on the host takes precedence over the project default
+                if (properties.getProperty(SHARED_STORE_PATH_PROPERTY) != null && System.getenv(WrapperConfiguration.SHARED_STORE_ENV) == null) {
+                    config.setSharedStorePaths(WrapperConfiguration.parsePathList(getProperty(SHARED_STORE_PATH_PROPERTY)));
+                }
+
+                if (properties.getProperty(DEDUPE_PROPERTY) != null && System.getenv(WrapperConfiguration.DEDUPE_ENV) == null) {
+                    config.setDedupe(Boolean.valueOf(getProperty(DEDUPE_PROPERTY)));
+                }
+
+                if (properties.getProperty(MAX_DISTRIBUTION_AGE_DAYS_PROPERTY) != null && System.getenv(WrapperConfiguration.MAX_AGE_DAYS_ENV) == null) {
+                    config.setMaxDistributionAgeDays(WrapperConfiguration.parseLimit(getProperty(MAX_DISTRIBUTION_AGE_DAYS_PROPERTY)));
+                }
+
+                if (properties.getProperty(MAX_DISTRIBUTIONS_SIZE_MB_PROPERTY) != null && System.getenv(WrapperConfiguration.MAX_SIZE_MB_ENV) == null) {
+                    config.setMaxDistributionsSizeMb(WrapperConfiguration.parseLimit(getProperty(MAX_DISTRIBUTIONS_SIZE_MB_PROPERTY)));
+                }
 
 		if (config.isVerifyDownload()) {
 		    config.setChecksumAlgorithm(Checksum.valueOf(getProperty(CHECKSUM_ALGORITHM_PROPERTY)));
+                    config.setDistributionChecksum(properties.getProperty(DISTRIBUTION_CHECKSUM_PROPERTY));
 		}
             } catch (Exception e) {
                 throw new RuntimeException(String.format("Could not load wrapper properties from '%s'.", propertiesFile), e);
@@ -134,6 +177,7 @@ public class WrapperExecutor {
 
     public void execute(String[] args, Installer install, BootstrapMainStarter bootstrapMainStarter) throws Exception {
         File mavenHome = install.createDist(config);
+        install.startEviction(config);
 	bootstrapMainStarter.start(args, mavenHome);
     }
 
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.util.logging.Logger;
+
+/**
+ * Logger of the wrapper classes. Getting one costs nothing, and messages are
+ * printed to the standard error as {@code INFO: message}, so that a start which
+ * logs nothing never initialises java.util.logging. When java.util.logging is
+ * configured with the {@value #JUL_CONFIG_FILE_PROPERTY} or
+ * {@value #JUL_CONFIG_CLASS_PROPERTY} system properties, the messages are
+ * logged through it instead, the first time one is logged.
+ */
+public class WrapperLogger {
+    public static final String JUL_CONFIG_FILE_PROPERTY = "java.util.logging.config.file";
+    public static final String JUL_CONFIG_CLASS_PROPERTY = "java.util.logging.config.class";
+
+    private final String name;
+
+    private WrapperLogger(String name) {
+        this.name = name;
+    }
+
+    public static WrapperLogger getLogger(String name) {
+        return new WrapperLogger(name);
+    }
+
+    public void warning(String message) {
+        if (Backend.JUL) {
+            Logger.getLogger(name).warning(message);
+        } else {
+            System.err.println("WARNING: " + message);
+        }
+    }
+
+    public void info(String message) {
+        if (Backend.JUL) {
+            Logger.getLogger(name).info(message);
+        } else {
+            System.err.println("INFO: " + message);
+        }
+    }
+
+    /**
+     * Logs a debugging message, which is only shown when java.util.logging is
+     * configured to show it.
+     */
+    public void fine(String message) {
+        if (Backend.JUL) {
+            Logger.getLogger(name).fine(message);
+        }
+    }
+
+    /**
+     * Decides on the backend when the first message is logged.
+     */
+    private static class Backend {
+        static final boolean JUL = System.getProperty(JUL_CONFIG_FILE_PROPERTY) != null || System.getProperty(JUL_CONFIG_CLASS_PROPERTY) != null;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the timings of the wrapper phases (download, verification, unpacking
+ * and bootstrap) and writes them as a flat JSON report when the
+ * {@value #METRICS_FILE_PROPERTY} system property is set.
+ */
+public class WrapperMetrics {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(WrapperMetrics.class.getName());
+    public static final String METRICS_FILE_PROPERTY = "maven.wrapper.metricsFile";
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final Map<String, Long> values = new LinkedHashMap<String, Long>();
+
+    /**
+     * The metrics holding elapsed times, accumulated in nanoseconds so that
+     * short phases repeated many times do not round down to nothing.
+     */
+    private final Set<String> elapsedNames = new HashSet<String>();
+
+    /**
+     * Returns true if a report was requested, i.e. if extra measurements that
+     * cost time on their own are worth taking.
+     */
+    public boolean isEnabled() {
+        return System.getProperty(METRICS_FILE_PROPERTY) != null;
+    }
+
+    /**
+     * Adds the given value to the named metric, so that repeated phases (e.g.
+     * distribution and checksum downloads) are accumulated.
+     */
+    public synchronized void add(String name, long value) {
+        Long current = values.get(name);
+        values.put(name, current == null ? value : current + value);
+    }
+
+    public synchronized void set(String name, long value) {
+        values.put(name, value);
+    }
+
+    /**
+     * Returns the value of the named metric, in milliseconds for elapsed times.
+     */
+    public synchronized long get(String name) {
+        long value = getNanos(name);
+        return elapsedNames.contains(name) ? value / NANOS_PER_MILLI : value;
+    }
+
+    /**
+     * Returns the raw value of the named metric, in nanoseconds for elapsed
+     * times.
+     */
+    public synchronized long getNanos(String name) {
+        Long value = values.get(name);
+        return value == null ? 0L : value;
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()} value
+     * under the named metric, reported in milliseconds.
+     */
+    public void addElapsed(String name, long startNanos) {
+        addNanos(name, System.nanoTime() - startNanos);
+    }
+
+    synchronized void addNanos(String name, long nanos) {
+        elapsedNames.add(name);
+        add(name, nanos);
+    }
+
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+
+        for (String name : values.keySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+
+            sb.append(String.format("%n  \"%s\": %d", name, get(name)));
+            first = false;
+        }
+
+        return sb.append(String.format("%n}%n")).toString();
+    }
+
+    public void writeReport(File reportFile) throws IOException {
+        File parent = reportFile.getAbsoluteFile().getParentFile();
+
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8");
+
+        try {
+            writer.write(toJson());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the report to the file named by the {@value #METRICS_FILE_PROPERTY}
+     * system property, if any. Failures are reported but never fail the build.
+     */
+    public void writeReportIfRequested() {
+        String reportPath = System.getProperty(METRICS_FILE_PROPERTY);
+
+        if (reportPath == null) {
+            return;
+        }
+
+        try {
+            writeReport(new File(reportPath));
+        } catch (IOException e) {
+            LOG.warning(String.format("Could not write wrapper metrics to '%s': %s", reportPath, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the files the wrapper reads on every start: the wrapper
+ * properties, the user and project maven.properties and the version of the
+ * wrapper jar. The snapshot records the size and modification time of each
+ * file, and is only used while none of them changed, so that a warm start
+ * reads one small file instead of parsing the properties files and looking up
+ * the version in the jar.
+ */
+public class WrapperSnapshot {
+    private static final WrapperLogger LOG = WrapperLogger.getLogger(WrapperSnapshot.class.getName());
+
+    public static final String SNAPSHOT_PATH = "wrapper/snapshots";
+
+    private static final int MAGIC = 0x4d575331;
+    private static final int MAX_SNAPSHOT_SIZE = 64 * 1024;
+    private static final int MAX_STRING_LENGTH = 16 * 1024;
+
+    /**
+     * Files modified less than this long before the snapshot is written may be
+     * modified again without changing their size or, on coarse file systems,
+     * their modification time, so they are not snapshotted yet.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private final File[] sources;
+
+    private final Map<String, String> wrapperProperties;
+
+    private final Map<String, String> userProperties;
+
+    private final Map<String, String> projectProperties;
+
+    private final String wrapperVersion;
+
+    private WrapperSnapshot(File[] sources, Map<String, String> wrapperProperties, Map<String, String> userProperties,
+                            Map<String, String> projectProperties, String wrapperVersion) {
+        this.sources = sources;
+        this.wrapperProperties = wrapperProperties;
+        this.userProperties = userProperties;
+        this.projectProperties = projectProperties;
+        this.wrapperVersion = wrapperVersion;
+    }
+
+    /**
+     * Returns the snapshot file of the given wrapper properties under the Maven
+     * user home.
+     */
+    public static File snapshotFile(File mavenUserHome, File wrapperProperties) {
+        String name = Integer.toHexString(wrapperProperties.getAbsolutePath().hashCode());
+        return new File(mavenUserHome, SNAPSHOT_PATH + "/" + name + ".bin");
+    }
+
+    /**
+     * Parses the given files.
+     */
+    public static WrapperSnapshot parse(File wrapperJar, File wrapperProperties, File userProperties, File projectProperties, String wrapperVersion) {
+        return new WrapperSnapshot(new File[] { wrapperJar, wrapperProperties, userProperties, projectProperties },
+                SystemPropertiesHandler.getSystemProperties(wrapperProperties),
+                SystemPropertiesHandler.getSystemProperties(userProperties),
+                SystemPropertiesHandler.getSystemProperties(projectProperties),
+                wrapperVersion);
+    }
+
+    /**
+     * Reads the snapshot of the given files. Returns null if there is none, or
+     * if it is corrupt or any of the files changed since it was written.
+     */
+    public static WrapperSnapshot read(File snapshotFile, File wrapperJar, File wrapperProperties, File userProperties, File projectProperties) {
+        File[] sources = { wrapperJar, wrapperProperties, userProperties, projectProperties };
+        long length = snapshotFile.length();
+
+        if (length <= 8 || length > MAX_SNAPSHOT_SIZE) {
+            return null;
+        }
+
+        try {
+            byte[] content = readFully(snapshotFile, (int) length);
+            CRC32 crc = new CRC32();
+            crc.update(content, 0, content.length - 8);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+
+            for (File source : sources) {
+                if (!in.readUTF().equals(source.getAbsolutePath()) || in.readLong() != source.length() || in.readLong() != source.lastModified()) {
+                    return null;
+                }
+            }
+
+            WrapperSnapshot snapshot = new WrapperSnapshot(sources, readMap(in), readMap(in), readMap(in), in.readUTF());
+
+            return in.readLong() == crc.getValue() ? snapshot : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot unless one of its files was modified too recently to
+     * be told apart from a later change. Failures are ignored as the snapshot
+     * only saves time.
+     */
+    public void write(File snapshotFile) {
+        long now = System.currentTimeMillis();
+
+        for (File source : sources) {
+            if (source.lastModified() > now - RACY_MILLIS) {
+                return;
+            }
+        }
+
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(content);
+            out.writeInt(MAGIC);
+
+            for (File source : sources) {
+                out.writeUTF(source.getAbsolutePath());
+                out.writeLong(source.length());
+                out.writeLong(source.lastModified());
+            }
+
+            if (!writeMap(out, wrapperProperties) || !writeMap(out, userProperties) || !writeMap(out, projectProperties)) {
+                return;
+            }
+
+            out.writeUTF(wrapperVersion);
+
+            CRC32 crc = new CRC32();
+            crc.update(content.toByteArray());
+            out.writeLong(crc.getValue());
+            out.flush();
+
+            if (content.size() > MAX_SNAPSHOT_SIZE) {
+                return;
+            }
+
+            writeAtomically(content.toByteArray(), snapshotFile);
+        } catch (IOException e) {
+            LOG.fine(String.format("Could not write wrapper snapshot %s: %s", snapshotFile, e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the wrapper properties.
+     */
+    public Properties getWrapperProperties() {
+        Properties properties = new Properties();
+        properties.putAll(wrapperProperties);
+        return properties;
+    }
+
+    /**
+     * Returns the system properties of the maven.properties in the Maven user
+     * home.
+     */
+    public Map<String, String> getUserProperties() {
+        return userProperties;
+    }
+
+    /**
+     * Returns the system properties of the maven.properties of the project.
+     */
+    public Map<String, String> getProjectProperties() {
+        return projectProperties;
+    }
+
+    public String getWrapperVersion() {
+        return wrapperVersion;
+    }
+
+    private static Map<String, String> readMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+
+        if (size < 0 || size > MAX_SNAPSHOT_SIZE) {
+            throw new IOException("Corrupt wrapper snapshot.");
+        }
+
+        Map<String, String> map = new LinkedHashMap<String, String>();
+
+        for (int i = 0; i < size; i++) {
+            map.put(in.readUTF(), in.readUTF());
+        }
+
+        return map;
+    }
+
+    /**
+     * Writes the map, returning false if a key or value is too long to be
+     * snapshotted.
+     */
+    private static boolean writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+        out.writeInt(map.size());
+
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (entry.getKey().length() > MAX_STRING_LENGTH || entry.getValue().length() > MAX_STRING_LENGTH) {
+                return false;
+            }
+
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue());
+        }
+
+        return true;
+    }
+
+    private static byte[] readFully(File file, int length) throws IOException {
+        byte[] content = new byte[length];
+        InputStream in = new FileInputStream(file);
+
+        try {
+            int read = 0;
+
+            while (read < length) {
+                int count = in.read(content, read, length - read);
+
+                if (count < 0) {
+                    throw new IOException("Truncated wrapper snapshot.");
+                }
+
+                read += count;
+            }
+        } finally {
+            in.close();
+        }
+
+        return content;
+    }
+
+    private static void writeAtomically(byte[] content, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        File tmpFile = File.createTempFile(file.getName() + "-", ".part", file.getParentFile());
+
+        try {
+            FileOutputStream out = new FileOutputStream(tmpFile);
+
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+
+            if (!tmpFile.renameTo(file)) {
+                file.delete();
+
+                if (!tmpFile.renameTo(file)) {
+                    throw new IOException(String.format("Could not move %s to %s", tmpFile, file));
+                }
+            }
+        } finally {
+            tmpFile.delete();
+        }
+    }
+}
@@ -69,6 +69,8 @@ import java.util.TreeSet;
 public class CommandLineParser {
     private Map<String, CommandLineOption> optionsByString = new HashMap<String, CommandLineOption>();
 
+    private final OptionTrie options = new OptionTrie();
+
     private boolean allowMixedOptions;
 
     private boolean allowUnknownOptions;
@@ -110,72 +112,53 @@ public class CommandLineParser {
         ParserState parseState = new BeforeFirstSubCommand(parsedCommandLine);
         for (String arg : commandLine) {
             if (parseState.maybeStartOption(arg)) {
-                if (arg.equals("--")) {
+                int length = arg.length();
+                int endArg = arg.indexOf('=');
+
+                if (length == 2 && arg.charAt(1) == '-') {
                     parseState = new AfterOptions(parsedCommandLine);
-                } else if (arg.matches("--[^=]+")) {
-                    OptionParserState parsedOption = parseState.onStartOption(arg, arg.substring(2));
+                } else if (arg.charAt(1) == '-' && endArg < 0) {
+                    // --option
+                    OptionParserState parsedOption = parseState.onStartOption(arg, 2, length);
                     parseState = parsedOption.onStartNextArg();
-                } else if (arg.matches("--[^=]+=.*")) {
-                    int endArg = arg.indexOf('=');
-                    OptionParserState parsedOption = parseState.onStartOption(arg, arg.substring(2, endArg));
+                } else if (arg.charAt(1) == '-' && endArg > 2) {
+                    // --option=argument
+                    OptionParserState parsedOption = parseState.onStartOption(arg, 2, endArg);
                     parseState = parsedOption.onArgument(arg.substring(endArg + 1));
-                } else if (arg.matches("-[^=]=.*")) {
-                    OptionParserState parsedOption = parseState.onStartOption(arg, arg.substring(1, 2));
+                } else if (endArg == 2) {
+                    // -o=argument
+                    OptionParserState parsedOption = parseState.onStartOption(arg, 1, 2);
                     parseState = parsedOption.onArgument(arg.substring(3));
+                } else if (options.get(arg, 1, length) != null) {
+                    OptionParserState parsedOption = parseState.onStartOption(arg, 1, length);
+                    parseState = parsedOption.onStartNextArg();
                 } else {
-                    assert arg.matches("-[^-].*");
-                    String option = arg.substring(1);
+                    OptionTrie option1 = options.get(arg, 1, 2);
+                    OptionParserState parsedOption;
 
-                    if (optionsByString.containsKey(option)) {
-                        OptionParserState parsedOption = parseState.onStartOption(arg, option);
-                        parseState = parsedOption.onStartNextArg();
-                    } else {
-                        String option1 = arg.substring(1, 2);
-                        OptionParserState parsedOption;
-
-			if (optionsByString.containsKey(option1)) {
-                            parsedOption = parseState.onStartOption("-" + option1, option1);
+                    if (option1 != null) {
+                        parsedOption = parseState.onStartOption("-" + option1.optionString, 1, 2);
 
-			    if (parsedOption.getHasArgument()) {
-                                parseState = parsedOption.onArgument(arg.substring(2));
-                            } else {
-                                parseState = parsedOption.onComplete();
-
-				for (int i = 2; i < arg.length(); i++) {
-                                    String optionStr = arg.substring(i, i + 1);
-                                    parsedOption = parseState.onStartOption("-" + optionStr, optionStr);
-                                    parseState = parsedOption.onComplete();
-                                }
-                            }
+                        if (parsedOption.getHasArgument()) {
+                            parseState = parsedOption.onArgument(arg.substring(2));
                         } else {
-                            if (allowUnknownOptions) {
-                                // if we are
-                                // allowing
-                                // unknowns,
-                                // just pass
-                                // through the
-                                // whole arg
-                                parsedOption = parseState.onStartOption(arg, option);
-                                parseState = parsedOption.onComplete();
-                            } else {
-                                // We are going
-                                // to throw a
-                                // CommandLineArgumentException
-                                // below, but
-                                // want the
-                                // message
-                                // to reflect
-                                // that we
-                                // didn't
-                                // recognise the
-                                // first char
-                                // (i.e. the
-                                // option
-                                // specifier)
-                                parsedOption = parseState.onStartOption("-" + option1, option1);
+                            parseState = parsedOption.onComplete();
+
+                            for (int i = 2; i < length; i++) {
+                                parsedOption = parseState.onStartOption("-" + arg.charAt(i), 1, 2);
                                 parseState = parsedOption.onComplete();
                             }
                         }
+                    } else if (allowUnknownOptions) {
+                        // if we are allowing unknowns, just pass through the whole arg
+                        parsedOption = parseState.onStartOption(arg, 1, length);
+                        parseState = parsedOption.onComplete();
+                    } else {
+                        // We are going to throw a CommandLineArgumentException
+                        // below, but want the message to reflect that we didn't
+                        // recognise the first char (i.e. the option specifier)
+                        parsedOption = parseState.onStartOption("-" + arg.charAt(1), 1, 2);
+                        parseState = parsedOption.onComplete();
                     }
                 }
             } else {
@@ -291,39 +274,86 @@ public class CommandLineParser {
 
 	for (String optionStr : option.getOptions()) {
             this.optionsByString.put(optionStr, option);
+            this.options.put(optionStr, option);
         }
 	
         return option;
     }
 
-    private static class OptionString {
-        private final String arg;
+    /**
+     * Prefix trie of the option strings, so that the option of an argument is
+     * looked up without extracting it from the argument.
+     */
+    private static class OptionTrie {
+        private char[] chars = new char[0];
 
-        private final String option;
+        private OptionTrie[] children = new OptionTrie[0];
 
-        private OptionString(String arg, String option) {
-            this.arg = arg;
-            this.option = option;
+        private String optionString;
+
+        private CommandLineOption option;
+
+        void put(String optionString, CommandLineOption option) {
+            OptionTrie node = this;
+
+            for (int i = 0; i < optionString.length(); i++) {
+                OptionTrie child = node.child(optionString.charAt(i));
+
+                if (child == null) {
+                    child = new OptionTrie();
+                    node.chars = Arrays.copyOf(node.chars, node.chars.length + 1);
+                    node.children = Arrays.copyOf(node.children, node.children.length + 1);
+                    node.chars[node.chars.length - 1] = optionString.charAt(i);
+                    node.children[node.children.length - 1] = child;
+                }
+
+                node = child;
+            }
+
+            node.optionString = optionString;
+            node.option = option;
         }
 
-        public String getDisplayName() {
-            return arg.startsWith("--") ? "--" + option : "-" + option;
+        /**
+         * Returns the node of the option between the given indexes of the
+         * argument, or null if there is no such option.
+         */
+        OptionTrie get(String arg, int start, int end) {
+            OptionTrie node = this;
+
+            for (int i = start; i < end && node != null; i++) {
+                node = node.child(arg.charAt(i));
+            }
+
+            return node == null || node.option == null ? null : node;
         }
 
-        @Override
-        public String toString() {
-            return getDisplayName();
+        private OptionTrie child(char c) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+
+            return null;
         }
     }
 
+    private static String getDisplayName(String arg, String option) {
+        return arg.startsWith("--") ? "--" + option : "-" + option;
+    }
+
     private static abstract class ParserState {
         public abstract boolean maybeStartOption(String arg);
 
         boolean isOption(String arg) {
-            return arg.matches("-.+");
+            return arg.length() > 1 && arg.charAt(0) == '-';
         }
 
-        public abstract OptionParserState onStartOption(String arg, String option);
+        /**
+         * Starts the option between the given indexes of the argument.
+         */
+        public abstract OptionParserState onStartOption(String arg, int start, int end);
 
         public abstract ParserState onNonOption(String arg);
 
@@ -356,19 +386,19 @@ public class CommandLineParser {
         }
 
         @Override
-        public OptionParserState onStartOption(String arg, String option) {
-            OptionString optionString = new OptionString(arg, option);
-            CommandLineOption commandLineOption = optionsByString.get(option);
+        public OptionParserState onStartOption(String arg, int start, int end) {
+            OptionTrie option = options.get(arg, start, end);
 
-            if (commandLineOption == null) {
+            if (option == null) {
                 if (allowUnknownOptions) {
                     return new UnknownOptionParserState(arg, commandLine, this);
                 } else {
-                    throw new CommandLineArgumentException(String.format("Unknown command-line option '%s'.", optionString));
+                    throw new CommandLineArgumentException(String.format("Unknown command-line option '%s'.",
+                            getDisplayName(arg, arg.substring(start, end))));
                 }
             }
 	    
-            return new KnownOptionParserState(optionString, commandLineOption, commandLine, this);
+            return new KnownOptionParserState(arg, option.optionString, option.option, commandLine, this);
         }
     }
 
@@ -378,14 +408,14 @@ public class CommandLineParser {
         }
 
         @Override
-        public OptionParserState onStartOption(String arg, String option) {
-            CommandLineOption commandLineOption = optionsByString.get(option);
+        public OptionParserState onStartOption(String arg, int start, int end) {
+            OptionTrie option = options.get(arg, start, end);
 
-	    if (commandLineOption == null) {
+	    if (option == null) {
                 return new UnknownOptionParserState(arg, commandLine, this);
             }
 	    
-            return new KnownOptionParserState(new OptionString(arg, option), commandLineOption, commandLine, this);
+            return new KnownOptionParserState(arg, option.optionString, option.option, commandLine, this);
         }
     }
 
@@ -402,7 +432,7 @@ public class CommandLineParser {
         }
 
         @Override
-        public OptionParserState onStartOption(String arg, String option) {
+        public OptionParserState onStartOption(String arg, int start, int end) {
             return new UnknownOptionParserState(arg, commandLine, this);
         }
 
@@ -426,8 +456,8 @@ public class CommandLineParser {
         }
 
         @Override
-        public OptionParserState onStartOption(String arg, String option) {
-            return this.option.onComplete().onStartOption(arg, option);
+        public OptionParserState onStartOption(String arg, int start, int end) {
+            return this.option.onComplete().onStartOption(arg, start, end);
         }
 
         @Override
@@ -452,7 +482,9 @@ public class CommandLineParser {
     }
 
     private class KnownOptionParserState extends OptionParserState {
-        private final OptionString optionString;
+        private final String arg;
+
+        private final String optionString;
 
         private final CommandLineOption option;
 
@@ -460,10 +492,15 @@ public class CommandLineParser {
 
         private final ParserState state;
 
-        private final List<String> values = new ArrayList<String>();
+        /**
+         * The argument of this occurrence of the option, added to the values of
+         * the parsed option once complete.
+         */
+        private String value;
 
-        private KnownOptionParserState(OptionString optionString, CommandLineOption option, ParsedCommandLine commandLine,
+        private KnownOptionParserState(String arg, String optionString, CommandLineOption option, ParsedCommandLine commandLine,
                 ParserState state) {
+            this.arg = arg;
             this.optionString = optionString;
             this.option = option;
             this.commandLine = commandLine;
@@ -473,21 +510,21 @@ public class CommandLineParser {
         @Override
         public ParserState onArgument(String argument) {
             if (!getHasArgument()) {
-                throw new CommandLineArgumentException(String.format("Command-line option '%s' does not take an argument.", optionString));
+                throw new CommandLineArgumentException(String.format("Command-line option '%s' does not take an argument.", getDisplayName()));
             }
 	    
             if (argument.length() == 0) {
                 throw new CommandLineArgumentException(
-                        String.format("An empty argument was provided for command-line option '%s'.", optionString));
+                        String.format("An empty argument was provided for command-line option '%s'.", getDisplayName()));
             }
 	    
-            values.add(argument);
+            value = argument;
             return onComplete();
         }
 
         @Override
         public ParserState onStartNextArg() {
-            if (option.getAllowsArguments() && values.isEmpty()) {
+            if (option.getAllowsArguments() && value == null) {
                 return new MissingOptionArgState(this);
             }
 	    
@@ -501,24 +538,24 @@ public class CommandLineParser {
 
         @Override
         public ParserState onComplete() {
-            if (getHasArgument() && values.isEmpty()) {
+            if (getHasArgument() && value == null) {
                 throw new CommandLineArgumentException(
-                        String.format("No argument was provided for command-line option '%s'.", optionString));
+                        String.format("No argument was provided for command-line option '%s'.", getDisplayName()));
             }
 
-            ParsedCommandLineOption parsedOption = commandLine.addOption(optionString.option, option);
+            ParsedCommandLineOption parsedOption = commandLine.addOption(optionString, option);
+
+            if (value != null) {
+                if (!parsedOption.getValues().isEmpty() && !option.getAllowsMultipleArguments()) {
+                    throw new CommandLineArgumentException(
+                            String.format("Multiple arguments were provided for command-line option '%s'.", getDisplayName()));
+                }
 
-            if (values.size() + parsedOption.getValues().size() > 1 && !option.getAllowsMultipleArguments()) {
-                throw new CommandLineArgumentException(
-                        String.format("Multiple arguments were provided for command-line option '%s'.", optionString));
-            }
-	    
-            for (String value : values) {
                 parsedOption.addArgument(value);
             }
 	    
             if (option.getDeprecationWarning() != null) {
-                deprecationPrinter.println("The " + optionString + " option is deprecated - " + option.getDeprecationWarning());
+                deprecationPrinter.println("The " + getDisplayName() + " option is deprecated - " + option.getDeprecationWarning());
             }
 	    
             if (option.getSubcommand() != null) {
@@ -527,6 +564,10 @@ public class CommandLineParser {
 
             return state;
         }
+
+        private String getDisplayName() {
+            return CommandLineParser.getDisplayName(arg, optionString);
+        }
     }
 
     private static class UnknownOptionParserState extends OptionParserState {
@@ -120,7 +120,11 @@ public class ParsedCommandLine {
 
     ParsedCommandLineOption addOption(String optionStr, CommandLineOption option) {
         ParsedCommandLineOption parsedOption = optionsByString.get(optionStr);
-        presentOptions.addAll(option.getOptions());
+
+        // the option strings of an option are added together
+        if (!presentOptions.contains(optionStr)) {
+            presentOptions.addAll(option.getOptions());
+        }
 
         return parsedOption;
     }
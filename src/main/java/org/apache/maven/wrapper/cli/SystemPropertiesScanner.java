@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper.cli;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single pass over a command-line extracting the system properties, and
+ * whether one of the given flag options is present, as a
+ * {@link CommandLineParser} configured with a
+ * {@link SystemPropertiesCommandLineConverter} and the flag options, allowing
+ * unknown options and mixing sub-commands and options, would. No parser state
+ * is built, and nothing is allocated for arguments other than system
+ * properties.
+ * <p>
+ * Command-lines the parser would reject, or would read in a way the scanner
+ * does not handle, such as combined short options or a system property option
+ * with its value in the next argument, are not scanned, and must be parsed
+ * instead.
+ */
+public class SystemPropertiesScanner {
+    private final String propertyOption;
+
+    private final String propertyOptionDetailed;
+
+    private final List<String> flagOptions;
+
+    private Map<String, String> systemProperties;
+
+    private boolean flagPresent;
+
+    /**
+     * @param flagOptions
+     *            the short and long names of an option without arguments
+     */
+    public SystemPropertiesScanner(String... flagOptions) {
+        SystemPropertiesCommandLineConverter converter = new SystemPropertiesCommandLineConverter();
+        this.propertyOption = converter.getPropertyOption();
+        this.propertyOptionDetailed = converter.getPropertyOptionDetailed();
+        this.flagOptions = Arrays.asList(flagOptions);
+    }
+
+    /**
+     * Scans the given command-line.
+     *
+     * @param commandLine
+     *            The command-line.
+     * @return false if the command-line must be parsed by a
+     *         {@link CommandLineParser} instead.
+     */
+    public boolean scan(String... commandLine) {
+        systemProperties = null;
+        flagPresent = false;
+
+        for (String arg : commandLine) {
+            int length = arg.length();
+
+            if (length < 2 || arg.charAt(0) != '-') {
+                continue;
+            }
+
+            if (length == 2 && arg.charAt(1) == '-') {
+                break;
+            }
+
+            int equals = arg.indexOf('=', 1);
+
+            if (arg.charAt(1) == '-' && (equals < 0 || equals > 2)) {
+                // --option or --option=value
+                if (!scanOption(arg, 2, equals < 0 ? length : equals, equals)) {
+                    return false;
+                }
+            } else if (equals == 2) {
+                // -o=value
+                if (!scanOption(arg, 1, 2, equals)) {
+                    return false;
+                }
+            } else if (isOption(arg, 1, length, propertyOption) || isOption(arg, 1, length, propertyOptionDetailed) || isFlag(arg, 1, length)) {
+                // -D, -o, or a long option given with a single dash
+                if (!scanOption(arg, 1, length, -1)) {
+                    return false;
+                }
+            } else if (isOption(arg, 1, 2, propertyOption)) {
+                // -Dname=value
+                addSystemProperty(arg.substring(2));
+            } else if (length > 2 && isFlag(arg, 1, 2)) {
+                // combined short options
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Scans the option between the given indexes, with its value after the
+     * given equals sign index if any, returning false if it must be parsed.
+     */
+    private boolean scanOption(String arg, int start, int end, int equals) {
+        if (isOption(arg, start, end, propertyOption) || isOption(arg, start, end, propertyOptionDetailed)) {
+            // the value in the next argument, or an empty value, is left to the parser
+            if (equals < 0 || equals == arg.length() - 1) {
+                return false;
+            }
+
+            addSystemProperty(arg.substring(equals + 1));
+        } else if (isFlag(arg, start, end)) {
+            if (equals >= 0) {
+                return false;
+            }
+
+            flagPresent = true;
+        }
+
+        return true;
+    }
+
+    private boolean isFlag(String arg, int start, int end) {
+        for (String flagOption : flagOptions) {
+            if (isOption(arg, start, end, flagOption)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isOption(String arg, int start, int end, String option) {
+        return end - start == option.length() && arg.regionMatches(start, option, 0, option.length());
+    }
+
+    private void addSystemProperty(String keyValueExpression) {
+        if (systemProperties == null) {
+            systemProperties = new HashMap<String, String>();
+        }
+
+        int pos = keyValueExpression.indexOf('=');
+
+        if (pos < 0) {
+            systemProperties.put(keyValueExpression, "");
+        } else {
+            systemProperties.put(keyValueExpression.substring(0, pos), keyValueExpression.substring(pos + 1));
+        }
+    }
+
+    /**
+     * Returns the system properties of the last scanned command-line.
+     */
+    public Map<String, String> getSystemProperties() {
+        if (systemProperties == null) {
+            return Collections.emptyMap();
+        }
+
+        return systemProperties;
+    }
+
+    /**
+     * Returns true if the flag option is present in the last scanned
+     * command-line.
+     */
+    public boolean isFlagPresent() {
+        return flagPresent;
+    }
+}
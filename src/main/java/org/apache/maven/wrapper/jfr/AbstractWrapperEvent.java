@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.maven.wrapper.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+import org.apache.maven.wrapper.WrapperEvent;
+
+/**
+ * Base class of the wrapper flight recorder events. Only loaded through
+ * {@link org.apache.maven.wrapper.WrapperEvents} when {@code jdk.jfr} is
+ * present.
+ */
+@Category({ "Maven", "Wrapper" })
+public abstract class AbstractWrapperEvent extends Event implements WrapperEvent {
+    @Label("Subject")
+    protected String subject;
+
+    @Label("Bytes")
+    @DataAmount
+    protected long bytes;
+
+    public void start(String subject) {
+        this.subject = subject;
+        begin();
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
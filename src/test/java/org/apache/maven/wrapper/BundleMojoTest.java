@@ -0,0 +1,127 @@
+package org.apache.maven.wrapper;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+
+public class BundleMojoTest extends AbstractMojoTestCase {
+    private static final String PLUGIN_TEST_FILE_LOCATION = "src/test/resources/org/apache/maven/wrapper/bundle-config.xml";
+    private static final String PLUGIN_TEST_ARTIFACT_LOCATION = "src/test/resources/org/apache/maven/wrapper/dummy-wrapper-artifact.txt";
+
+    private File testDir;
+    private File wrapperSupportDir;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        testDir = new File(getBasedir(), "target/test-bundle");
+        wrapperSupportDir = new File(testDir, "project/maven");
+        FileUtils.deleteQuietly(testDir);
+
+        File distribution = new File(testDir, "repository/0.0.1/apache-maven-0.0.1-bin.zip");
+        DistributionZips.writeDistribution(distribution);
+        FileUtils.write(new File(distribution.getPath() + ".sha256"), sha256(distribution) + "  apache-maven-0.0.1-bin.zip\n");
+    }
+
+    protected void tearDown() throws Exception {
+        FileUtils.deleteQuietly(testDir);
+        super.tearDown();
+    }
+
+    private static String sha256(File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+
+        try {
+            return Checksum.SHA256.generate(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private BundleMojo lookupBundleMojo() throws Exception {
+        PlexusConfiguration pluginConfiguration = extractPluginConfiguration("wrapper-maven-plugin", new File(getBasedir(), PLUGIN_TEST_FILE_LOCATION));
+        BundleMojo mojo = (BundleMojo) configureMojo(new BundleMojo(), pluginConfiguration);
+
+        Artifact artifact = mock(Artifact.class);
+        when(artifact.getFile()).thenReturn(new File(getBasedir(), PLUGIN_TEST_ARTIFACT_LOCATION));
+
+        PluginDescriptor pluginDescriptor = mock(PluginDescriptor.class);
+        when(pluginDescriptor.getPluginArtifact()).thenReturn(artifact);
+        when(pluginDescriptor.getVersion()).thenReturn("0.0.1");
+        mojo.setPlugin(pluginDescriptor);
+
+        return mojo;
+    }
+
+    public void testBundleInstallsWithoutTheRepository() throws Exception {
+        lookupBundleMojo().execute();
+
+        File archive = new File(wrapperSupportDir, "apache-maven-0.0.1-bin.zip");
+        assertTrue(archive.isFile());
+
+        WrapperExecutor wrapperExecutor = WrapperExecutor.forWrapperPropertiesFile(new File(wrapperSupportDir, MavenWrapperMojo.WRAPPER_PROPERTIES_FILE_NAME));
+        WrapperConfiguration configuration = wrapperExecutor.getConfiguration();
+        assertEquals(archive.toURI(), configuration.getDistributionUris().get(0));
+        assertEquals(Checksum.SHA256, configuration.getChecksumAlgorithm());
+        assertEquals(sha256(archive), configuration.getDistributionChecksum());
+
+        FileUtils.deleteDirectory(new File(testDir, "repository"));
+        configuration.setOffline(true);
+
+        File mavenHome = new Installer(new DefaultDownloader("mvnw", "0.0.1"), new PathAssembler(new File(testDir, "userHome"))).createDist(configuration);
+        assertTrue(new File(mavenHome, "bin/mvn").isFile());
+    }
+
+    public void testBundleRejectsTamperedArchive() throws Exception {
+        lookupBundleMojo().execute();
+
+        File archive = new File(wrapperSupportDir, "apache-maven-0.0.1-bin.zip");
+        FileUtils.write(archive, "tampered");
+
+        WrapperConfiguration configuration = WrapperExecutor.forWrapperPropertiesFile(new File(wrapperSupportDir, MavenWrapperMojo.WRAPPER_PROPERTIES_FILE_NAME))
+                .getConfiguration();
+
+        try {
+            new Installer(new DefaultDownloader("mvnw", "0.0.1"), new PathAssembler(new File(testDir, "userHome"))).createDist(configuration);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("failed to verify"));
+        }
+    }
+
+    public void testBundleKeepsArchiveMatchingPinnedChecksum() throws Exception {
+        lookupBundleMojo().execute();
+        FileUtils.deleteDirectory(new File(testDir, "repository"));
+
+        lookupBundleMojo().execute();
+
+        File archive = new File(wrapperSupportDir, "apache-maven-0.0.1-bin.zip");
+        WrapperConfiguration configuration = WrapperExecutor.forWrapperPropertiesFile(new File(wrapperSupportDir, MavenWrapperMojo.WRAPPER_PROPERTIES_FILE_NAME))
+                .getConfiguration();
+        assertEquals(sha256(archive), configuration.getDistributionChecksum());
+    }
+
+    public void testBundleDownloadsTamperedArchiveAgain() throws Exception {
+        lookupBundleMojo().execute();
+
+        File archive = new File(wrapperSupportDir, "apache-maven-0.0.1-bin.zip");
+        String bundledChecksum = sha256(archive);
+        FileUtils.write(archive, "tampered");
+
+        lookupBundleMojo().execute();
+
+        WrapperConfiguration configuration = WrapperExecutor.forWrapperPropertiesFile(new File(wrapperSupportDir, MavenWrapperMojo.WRAPPER_PROPERTIES_FILE_NAME))
+                .getConfiguration();
+        assertEquals(bundledChecksum, sha256(archive));
+        assertEquals(bundledChecksum, configuration.getDistributionChecksum());
+    }
+}
@@ -0,0 +1,71 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.net.URI;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.wrapper.PathAssembler.LocalDistribution;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingPathAssemblerTest {
+    private static final URI DISTRIBUTION_URI = URI.create("http://server/dist/maven-0.9-bin.zip");
+
+    private final File mavenUserHome = new File("someUserHome");
+    private final CachingPathAssembler pathAssembler = new CachingPathAssembler(mavenUserHome);
+    private final WrapperConfiguration configuration = new WrapperConfiguration();
+
+    @Before
+    public void setup() {
+        configuration.setDistributionBase(PathAssembler.MAVEN_USER_HOME_STRING);
+        configuration.setDistributionPath("somePath");
+        configuration.setZipBase(PathAssembler.MAVEN_USER_HOME_STRING);
+        configuration.setZipPath("somePath");
+    }
+
+    @Test
+    public void resolvesTheSameLocationsAsPathAssembler() {
+        LocalDistribution expected = new PathAssembler(mavenUserHome).getDistribution(configuration, DISTRIBUTION_URI);
+        LocalDistribution distribution = pathAssembler.getDistribution(configuration, DISTRIBUTION_URI);
+
+        assertEquals(expected.getDistributionDir(), distribution.getDistributionDir());
+        assertEquals(expected.getZipFile(), distribution.getZipFile());
+    }
+
+    @Test
+    public void reusesLocationsOfEqualConfigurations() {
+        WrapperConfiguration other = new WrapperConfiguration();
+        other.setDistributionBase(PathAssembler.MAVEN_USER_HOME_STRING);
+        other.setDistributionPath("somePath");
+        other.setZipBase(PathAssembler.MAVEN_USER_HOME_STRING);
+        other.setZipPath("somePath");
+
+        LocalDistribution distribution = pathAssembler.getDistribution(configuration, DISTRIBUTION_URI);
+
+        assertSame(distribution, pathAssembler.getDistribution(other, DISTRIBUTION_URI));
+
+        other.setDistributionPath("otherPath");
+        LocalDistribution otherDistribution = pathAssembler.getDistribution(other, DISTRIBUTION_URI);
+
+        assertNotSame(distribution, otherDistribution);
+        assertEquals(new File(mavenUserHome, "otherPath/maven-0.9-bin/" + distribution.getDistributionDir().getName()),
+                otherDistribution.getDistributionDir());
+    }
+
+    @Test
+    public void locatesLocalArchiveReplacedInPlaceAnew() throws Exception {
+        File archive = new File("target/test-files/CachingPathAssemblerTest/maven/maven-0.9-bin.zip");
+        FileUtils.write(archive, "archive");
+        File distributionDir = pathAssembler.getDistribution(configuration, archive.toURI()).getDistributionDir();
+
+        FileUtils.write(archive, "ARCHIVE");
+        archive.setLastModified(archive.lastModified() + 60000);
+
+        assertFalse(distributionDir.equals(pathAssembler.getDistribution(configuration, archive.toURI()).getDistributionDir()));
+    }
+}
@@ -0,0 +1,46 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+public class DaemonProtocolTest {
+    @Test
+    public void framesRoundTrip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        DaemonProtocol.write(out, DaemonProtocol.ARGUMENT, "-Dname=välue");
+        DaemonProtocol.writeInt(out, DaemonProtocol.EXIT, -2);
+
+        PrintStream stdout = new PrintStream(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDOUT), true, "UTF-8");
+        stdout.print("BUILD SUCCESS");
+        stdout.flush();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        DaemonProtocol.Frame argument = DaemonProtocol.read(in);
+        DaemonProtocol.Frame exit = DaemonProtocol.read(in);
+        DaemonProtocol.Frame output = DaemonProtocol.read(in);
+
+        assertEquals(DaemonProtocol.ARGUMENT, argument.type);
+        assertEquals("-Dname=välue", argument.text());
+        assertEquals(DaemonProtocol.EXIT, exit.type);
+        assertEquals(-2, exit.intValue());
+        assertEquals(DaemonProtocol.STDOUT, output.type);
+        assertEquals("BUILD SUCCESS", output.text());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsIntegerFrameOfOtherLength() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DaemonProtocol.write(new DataOutputStream(bytes), DaemonProtocol.EXIT, "1");
+
+        DaemonProtocol.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))).intValue();
+    }
+}
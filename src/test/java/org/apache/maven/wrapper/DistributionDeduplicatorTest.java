@@ -0,0 +1,62 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DistributionDeduplicatorTest {
+    private File testDir = new File("target/test-files/DistributionDeduplicatorTest");
+
+    @Before
+    public void setup() throws Exception {
+        assumeTrue(DistributionDeduplicator.isSupported());
+        FileUtils.deleteQuietly(testDir);
+        FileUtils.write(new File(testDir, "dists/maven-3.3.3/lib/shared.jar"), "shared");
+        FileUtils.write(new File(testDir, "dists/maven-3.3.9/lib/shared.jar"), "shared");
+        FileUtils.write(new File(testDir, "dists/maven-3.3.9/lib/maven-core.jar"), "3.3.9");
+        FileUtils.write(new File(testDir, "dists/maven-3.3.3/conf/settings.xml"), "<settings/>");
+        FileUtils.write(new File(testDir, "dists/maven-3.3.9/conf/settings.xml"), "<settings/>");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(testDir);
+    }
+
+    @Test
+    public void linksIdenticalFilesOfDifferentDistributions() throws Exception {
+        DistributionDeduplicator deduplicator = new DistributionDeduplicator(new File(testDir, "blobs"));
+        deduplicator.dedupe(new File(testDir, "dists"));
+
+        assertEquals(1, deduplicator.getLinkedFiles());
+        assertEquals("shared".length(), deduplicator.getSavedBytes());
+
+        // both paths now name the same file
+        FileUtils.write(new File(testDir, "dists/maven-3.3.3/lib/shared.jar"), "changed");
+        assertEquals("changed", FileUtils.readFileToString(new File(testDir, "dists/maven-3.3.9/lib/shared.jar")));
+    }
+
+    @Test
+    public void leavesMutableFilesUnlinked() throws Exception {
+        new DistributionDeduplicator(new File(testDir, "blobs")).dedupe(new File(testDir, "dists"));
+
+        FileUtils.write(new File(testDir, "dists/maven-3.3.3/conf/settings.xml"), "<settings><offline>true</offline></settings>");
+        assertEquals("<settings/>", FileUtils.readFileToString(new File(testDir, "dists/maven-3.3.9/conf/settings.xml")));
+    }
+
+    @Test
+    public void dedupeIsIdempotent() throws Exception {
+        new DistributionDeduplicator(new File(testDir, "blobs")).dedupe(new File(testDir, "dists"));
+
+        DistributionDeduplicator deduplicator = new DistributionDeduplicator(new File(testDir, "blobs"));
+        deduplicator.dedupe(new File(testDir, "dists"));
+
+        assertEquals(0, deduplicator.getLinkedFiles());
+    }
+}
@@ -0,0 +1,91 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DistributionEvictorTest {
+    private static final long DAY = 24L * 60L * 60L * 1000L;
+
+    private File distributionsDir = new File("target/test-files/DistributionEvictorTest/dists");
+    private File recentDist = new File(distributionsDir, "apache-maven-3.3.9-bin/recent");
+    private File staleDist = new File(distributionsDir, "apache-maven-3.3.3-bin/stale");
+    private File olderDist = new File(distributionsDir, "apache-maven-3.2.5-bin/older");
+    private File snapshotsDir = new File("target/test-files/DistributionEvictorTest/snapshots");
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteQuietly(distributionsDir);
+        long now = System.currentTimeMillis();
+        createDist(recentDist, now);
+        createDist(staleDist, now - 10 * DAY);
+        createDist(olderDist, now - 20 * DAY);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(distributionsDir);
+        FileUtils.deleteQuietly(snapshotsDir);
+    }
+
+    private void createDist(File distDir, long lastAccess) throws Exception {
+        FileUtils.write(new File(distDir, "apache-maven/lib/maven-core.jar"), "0123456789");
+        distDir.setLastModified(lastAccess);
+    }
+
+    @Test
+    public void evictsDistributionsOlderThanMaxAge() throws Exception {
+        DistributionEvictor evictor = new DistributionEvictor(distributionsDir, distributionsDir, null, null, 15 * DAY, 0);
+        evictor.evict();
+
+        assertEquals(1, evictor.getEvictedCount());
+        assertFalse(olderDist.exists());
+        assertTrue(staleDist.exists());
+        assertTrue(recentDist.exists());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondMaxSizeButKeepsRecentOnes() throws Exception {
+        DistributionEvictor evictor = new DistributionEvictor(distributionsDir, distributionsDir, null, null, 0, 1);
+        evictor.evict();
+
+        assertEquals(2, evictor.getEvictedCount());
+        assertFalse(olderDist.exists());
+        assertFalse(staleDist.exists());
+        assertTrue(recentDist.exists());
+    }
+
+    @Test
+    public void skipsDistributionsBeingInstalled() throws Exception {
+        InstallLock lock = InstallLock.acquire(olderDist);
+
+        try {
+            new DistributionEvictor(distributionsDir, distributionsDir, null, null, 15 * DAY, 0).evict();
+        } finally {
+            lock.release();
+        }
+
+        assertTrue(olderDist.exists());
+    }
+
+    @Test
+    public void deletesSnapshotsOlderThanMaxAge() throws Exception {
+        File recentSnapshot = new File(snapshotsDir, "recent.bin");
+        File olderSnapshot = new File(snapshotsDir, "older.bin");
+        FileUtils.write(recentSnapshot, "snapshot");
+        FileUtils.write(olderSnapshot, "snapshot");
+        olderSnapshot.setLastModified(System.currentTimeMillis() - 20 * DAY);
+
+        new DistributionEvictor(distributionsDir, distributionsDir, null, snapshotsDir, 15 * DAY, 0).evict();
+
+        assertTrue(recentSnapshot.exists());
+        assertFalse(olderSnapshot.exists());
+    }
+}
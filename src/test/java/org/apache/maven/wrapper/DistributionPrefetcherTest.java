@@ -0,0 +1,77 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class DistributionPrefetcherTest {
+    private static final URI MAVEN_09_URI = URI.create("http://server/maven-0.9.zip");
+    private static final URI MAVEN_10_URI = URI.create("http://server/maven-1.0.zip");
+
+    private File testDir = new File("target/test-files/DistributionPrefetcherTest");
+    private File repositoryDir = new File(testDir, "repository");
+    private Downloader download = mock(Downloader.class);
+    private DistributionPrefetcher prefetcher;
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteQuietly(testDir);
+        writeWrapperProperties("module-a", MAVEN_09_URI);
+        writeWrapperProperties("module-b", MAVEN_09_URI);
+        writeWrapperProperties("group/module-c", MAVEN_10_URI);
+        writeWrapperProperties(".hidden/module-d", URI.create("http://server/maven-1.1.zip"));
+
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                DistributionZips.writeDistribution((File) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(download).download(any(URI.class), any(File.class));
+
+        PathAssembler pathAssembler = new CachingPathAssembler(new File(testDir, "userHome"));
+        prefetcher = new DistributionPrefetcher(new Installer(download, pathAssembler), pathAssembler, 2);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(testDir);
+    }
+
+    private void writeWrapperProperties(String module, URI distributionUri) throws Exception {
+        File propertiesFile = new File(repositoryDir, module + "/maven/" + DistributionPrefetcher.PROPERTIES_FILE_NAME);
+        FileUtils.write(propertiesFile, "distributionUrl=" + distributionUri.toString().replace(":", "\\:") + "\n");
+    }
+
+    @Test
+    public void installsEachDistinctDistributionOnce() throws Exception {
+        List<File> propertiesFiles = prefetcher.findWrapperProperties(repositoryDir);
+        assertEquals(3, propertiesFiles.size());
+
+        Collection<WrapperConfiguration> distributions = prefetcher.collectDistributions(propertiesFiles);
+        assertEquals(2, distributions.size());
+
+        prefetcher.prefetch(distributions);
+
+        assertEquals(2, prefetcher.getInstalledCount());
+        assertEquals(0, prefetcher.getFailedCount());
+        verify(download, times(1)).download(eq(MAVEN_09_URI), any(File.class));
+        verify(download, times(1)).download(eq(MAVEN_10_URI), any(File.class));
+    }
+}
@@ -0,0 +1,112 @@
+package org.apache.maven.wrapper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the distribution archives used by the tests.
+ */
+final class DistributionZips {
+    private DistributionZips() {
+    }
+
+    /**
+     * Writes a distribution whose single Maven home, {@code maven}, holds a
+     * {@code bin/mvn} containing "something".
+     */
+    static void writeDistribution(File zipFile) throws IOException {
+        zipFile.getParentFile().mkdirs();
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipFile));
+
+        try {
+            zip.putNextEntry(new ZipEntry("maven/"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("maven/bin/"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("maven/bin/mvn"));
+            zip.write("something".getBytes("UTF-8"));
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * Zips the files and directories of the given directory, without the
+     * directory itself.
+     */
+    static void zipTo(File directoryToZip, File destFile) throws IOException {
+        FileOutputStream fos = null;
+        ZipOutputStream zout = null;
+
+        try {
+            fos = new FileOutputStream(destFile);
+            zout = new ZipOutputStream(fos);
+
+            for (File f : directoryToZip.listFiles()) {
+                zipFiles("", zout, f);
+            }
+        } finally {
+            if (zout != null) {
+                zout.close();
+            }
+
+            if (fos != null) {
+                fos.close();
+            }
+        }
+    }
+
+    private static void zipFile(String prefixPath, ZipOutputStream zout, File f) throws IOException {
+        InputStream fin = null;
+
+        try {
+            ZipEntry ze = new ZipEntry(prefixPath + f.getName());
+            ze.setTime(f.lastModified());
+            zout.putNextEntry(ze);
+            fin = new FileInputStream(f);
+            byte[] buffer = new byte[4096];
+
+            for (int n; (n = fin.read(buffer)) > 0;) {
+                zout.write(buffer, 0, n);
+            }
+
+            zout.closeEntry();
+        } finally {
+            if (fin != null) {
+                fin.close();
+            }
+        }
+
+    }
+
+    private static void zipFolder(String prefixPath, ZipOutputStream zout, File f) throws IOException {
+        ZipEntry ze = new ZipEntry(prefixPath + f.getName() + '/');
+        ze.setTime(f.lastModified());
+        zout.putNextEntry(ze);
+        zout.closeEntry();
+
+        for (File file : f.listFiles()) {
+            zipFiles(prefixPath + f.getName(), zout, file);
+        }
+    }
+
+    private static void zipFiles(String prefix, ZipOutputStream zout, File f) throws IOException {
+        String prefixPath = prefix + "/";
+
+        if (prefixPath.startsWith("/")) {
+            prefixPath = prefixPath.substring(1);
+        }
+
+        if (f.isFile()) {
+            zipFile(prefixPath, zout, f);
+        } else {
+            zipFolder(prefixPath, zout, f);
+        }
+    }
+}
@@ -4,21 +4,20 @@ import static org.mockito.AdditionalMatchers.or;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.wrapper.PathAssembler.LocalDistribution;
@@ -108,7 +107,7 @@ public class InstallerTest {
         mavenScript.getParentFile().mkdirs();
         FileUtils.write(mavenScript, "something");
 
-        zipTo(explodedZipDir, zipDestination);
+        DistributionZips.zipTo(explodedZipDir, zipDestination);
     }
 
     private void createChecksum(final File checksumDestination, final String checksum) throws Exception {
@@ -195,6 +194,88 @@ public class InstallerTest {
         // distributionDir);
     }
 
+    @Test
+    public void testCreateDistDeletesLaunchConfigurationCacheOfPreviousInstall() throws Exception {
+        createTestZip(zipDestination);
+        install.createDist(configuration);
+        File cacheFile = new File(distributionDir, LaunchConfiguration.CACHE_FILE_NAME);
+        FileUtils.write(cacheFile, "cached");
+        configuration.setAlwaysUnpack(true);
+
+        install.createDist(configuration);
+
+        Assert.assertFalse(cacheFile.exists());
+    }
+
+    @Test
+    public void testRecordsArchiveBytesWithoutChecksumFiles() throws Exception {
+        WrapperMetrics metrics = new WrapperMetrics();
+        install = new Installer(download, pathAssembler, metrics);
+        configuration.setVerifyDownload(true);
+        configuration.setChecksumAlgorithm(Checksum.SHA1);
+        createTestZip(zipDestination);
+        createChecksum(checksumDestination, Checksum.SHA1.generate(new FileInputStream(zipDestination)));
+        configuration.setAlwaysDownload(true);
+
+        install.createDist(configuration);
+
+        Assert.assertEquals(zipDestination.length(), metrics.get("download.archiveBytes"));
+        Assert.assertTrue(metrics.get("download.bytesPerSecond") > 0);
+    }
+
+    private void pinChecksum(File archive) throws Exception {
+        FileInputStream in = new FileInputStream(archive);
+
+        try {
+            configuration.setVerifyDownload(true);
+            configuration.setChecksumAlgorithm(Checksum.SHA256);
+            configuration.setDistributionChecksum(Checksum.SHA256.generate(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testCreateDistUsesArchiveInPlaceWhenItCannotBeReplaced() throws Exception {
+        createTestZip(zipDestination);
+        pinChecksum(zipDestination);
+        configuration.setAlwaysDownload(true);
+        install = spy(install);
+        doReturn(false).when(install).replaceFile(any(File.class), eq(zipDestination));
+
+        File homeDir = install.createDist(configuration);
+
+        Assert.assertEquals(mavenHomeDir, homeDir);
+        Assert.assertTrue(new File(homeDir, "bin/mvn").exists());
+    }
+
+    @Test
+    public void testCreateDistVerifiesArchiveInPlaceWhenItCannotBeReplaced() throws Exception {
+        final File downloadedZip = new File(testDir, "downloaded/maven-0.9.zip");
+        createTestZip(downloadedZip);
+        pinChecksum(downloadedZip);
+        FileUtils.write(zipDestination, "incomplete");
+        configuration.setAlwaysDownload(true);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                FileUtils.copyFile(downloadedZip, (File) invocationOnMock.getArguments()[1]);
+                return null;
+            }
+        }).when(download).download(eq(WORKING_DISTRIBUTION_URI), any(File.class));
+        install = spy(install);
+        doReturn(false).when(install).replaceFile(any(File.class), eq(zipDestination));
+
+        try {
+            install.createDist(configuration);
+            Assert.fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("failed to verify"));
+        }
+
+        Assert.assertFalse(mavenHomeDir.exists());
+    }
+
     @Test
     public void testVerifyDownload() throws Exception {
         configuration.setAlwaysDownload(true);
@@ -317,74 +398,345 @@ public class InstallerTest {
         verify(download, times(2)).download(eq(BROKEN_DISTRIBUTION_URI), any(File.class));
     }
 
-    private static void zipTo(File directoryToZip, File destFile) throws IOException {
-        FileOutputStream fos = null;
-        ZipOutputStream zout = null;
+    @Test
+    public void testCreateDistWritesInstallStamp() throws Exception {
+        createTestZip(zipDestination);
+
+        File homeDir = install.createDist(configuration);
+
+        InstallStamp stamp = InstallStamp.read(distributionDir);
+        Assert.assertNotNull(stamp);
+        Assert.assertTrue(stamp.isValidFor(WORKING_DISTRIBUTION_URI));
+        Assert.assertEquals(homeDir, stamp.getMavenHome());
+    }
+
+    @Test
+    public void testCreateDistRecordsLauncherJar() throws Exception {
+        File explodedZipDir = new File(testDir, "explodedZip");
+        FileUtils.write(new File(explodedZipDir, "maven-0.9/bin/mvn"), "something");
+        FileUtils.write(new File(explodedZipDir, "maven-0.9/boot/plexus-classworlds-2.5.2.jar"), "something");
+        zipDestination.getParentFile().mkdirs();
+        DistributionZips.zipTo(explodedZipDir, zipDestination);
 
-        try {
-            fos = new FileOutputStream(destFile);
-            zout = new ZipOutputStream(fos);
+        File homeDir = install.createDist(configuration);
 
-            for (File f : directoryToZip.listFiles()) {
-                zipFiles("", zout, f);
-            }
-        } finally {
-            if (zout != null) {
-                zout.close();
-            }
+        InstallStamp stamp = InstallStamp.read(distributionDir);
+        Assert.assertEquals("boot/plexus-classworlds-2.5.2.jar", stamp.getLauncherJar());
+        Assert.assertEquals(new File(homeDir, "boot/plexus-classworlds-2.5.2.jar"), BootstrapMainStarter.findLauncherJar(homeDir));
+    }
 
-            if (fos != null) {
-                fos.close();
-            }
+    private void createLaunchableTestZip() throws Exception {
+        File explodedZipDir = new File(testDir, "explodedZip");
+        FileUtils.write(new File(explodedZipDir, "maven-0.9/bin/mvn"), "something");
+        FileUtils.write(new File(explodedZipDir, "maven-0.9/bin/m2.conf"), "main is org.apache.maven.cli.MavenCli from plexus.core");
+        FileUtils.write(new File(explodedZipDir, "maven-0.9/boot/plexus-classworlds-2.5.2.jar"), "something");
+        zipDestination.getParentFile().mkdirs();
+        DistributionZips.zipTo(explodedZipDir, zipDestination);
+    }
+
+    @Test
+    public void testCreateDistDoesNotRecordFilesByDefault() throws Exception {
+        createLaunchableTestZip();
+
+        install.createDist(configuration);
+
+        InstallStamp stamp = InstallStamp.read(distributionDir);
+        Assert.assertTrue(stamp.isComplete());
+        Assert.assertNull(stamp.getSha256());
+        Assert.assertFalse(stamp.isIntact());
+    }
+
+    @Test
+    public void testCreateDistRecordsFilesForSharedStores() throws Exception {
+        createLaunchableTestZip();
+        install.setRecordFiles(true);
+
+        install.createDist(configuration);
+
+        InstallStamp stamp = InstallStamp.read(distributionDir);
+        FileInputStream in = new FileInputStream(zipDestination);
+
+        try {
+            Assert.assertEquals(Checksum.SHA256.generate(in), stamp.getSha256());
+        } finally {
+            in.close();
         }
+
+        Assert.assertTrue(stamp.isIntact());
+    }
+
+    /**
+     * Installs maven-0.9 into the given directory of a shared store, as the
+     * installer stamps it.
+     */
+    private File createSharedInstall(File sharedDistDir) throws Exception {
+        File sharedMavenHome = new File(sharedDistDir, "maven-0.9");
+        FileUtils.write(new File(sharedMavenHome, "boot/plexus-classworlds-2.5.2.jar"), "launcher");
+        FileUtils.write(new File(sharedMavenHome, "bin/m2.conf"), "main is org.apache.maven.cli.MavenCli from plexus.core");
+        FileUtils.write(new File(sharedMavenHome, "lib/maven-core.jar"), "core");
+
+        InstallStamp stamp = new InstallStamp(sharedDistDir);
+        stamp.setDistributionUrl(WORKING_DISTRIBUTION_URI);
+        stamp.setMavenHome("maven-0.9");
+        stamp.setSha256("0123456789abcdef");
+        stamp.setLauncherJar("boot/plexus-classworlds-2.5.2.jar");
+        stamp.setFiles(sharedMavenHome);
+        stamp.write();
+
+        return sharedMavenHome;
+    }
+
+    @Test
+    public void testCreateDistFromSharedStore() throws Exception {
+        File sharedDistDir = new File(testDir, "sharedStore/someDistPath");
+        File sharedMavenHome = createSharedInstall(sharedDistDir);
+
+        when(localDistribution.getSharedDistributionDirs()).thenReturn(Arrays.asList(new File(testDir, "emptyStore"), sharedDistDir));
+
+        File homeDir = install.createDist(configuration);
+
+        Assert.assertEquals(sharedMavenHome, homeDir);
+        Assert.assertFalse(mavenHomeDir.exists());
+        verify(download, never()).download(any(URI.class), any(File.class));
+    }
+
+    @Test
+    public void testCreateDistFromSharedStoreMatchingPinnedChecksum() throws Exception {
+        File sharedDistDir = new File(testDir, "sharedStore/someDistPath");
+        File sharedMavenHome = createSharedInstall(sharedDistDir);
+
+        configuration.setChecksumAlgorithm(Checksum.SHA256);
+        configuration.setDistributionChecksum("0123456789ABCDEF");
+        when(localDistribution.getSharedDistributionDirs()).thenReturn(Collections.singletonList(sharedDistDir));
+
+        Assert.assertEquals(sharedMavenHome, install.createDist(configuration));
+    }
+
+    @Test
+    public void testCreateDistIgnoresSharedStoreOfOtherChecksum() throws Exception {
+        File sharedDistDir = new File(testDir, "sharedStore/someDistPath");
+        createSharedInstall(sharedDistDir);
+
+        configuration.setChecksumAlgorithm(Checksum.SHA256);
+        configuration.setDistributionChecksum("fedcba9876543210");
+        when(localDistribution.getSharedDistributionDirs()).thenReturn(Collections.singletonList(sharedDistDir));
+        createTestZip(zipDestination);
+
+        Assert.assertEquals(mavenHomeDir, install.createDist(configuration));
+    }
+
+    @Test
+    public void testCreateDistIgnoresModifiedSharedStore() throws Exception {
+        File sharedDistDir = new File(testDir, "sharedStore/someDistPath");
+        File sharedMavenHome = createSharedInstall(sharedDistDir);
+        FileUtils.write(new File(sharedMavenHome, "bin/m2.conf"), "main is org.example.Main from plexus.core");
+
+        when(localDistribution.getSharedDistributionDirs()).thenReturn(Collections.singletonList(sharedDistDir));
+        createTestZip(zipDestination);
+
+        Assert.assertEquals(mavenHomeDir, install.createDist(configuration));
+    }
+
+    @Test
+    public void testCreateDistIgnoresSharedStoreMissingFiles() throws Exception {
+        File sharedDistDir = new File(testDir, "sharedStore/someDistPath");
+        File sharedMavenHome = createSharedInstall(sharedDistDir);
+        Assert.assertTrue(new File(sharedMavenHome, "lib/maven-core.jar").delete());
+
+        when(localDistribution.getSharedDistributionDirs()).thenReturn(Collections.singletonList(sharedDistDir));
+        createTestZip(zipDestination);
+
+        Assert.assertEquals(mavenHomeDir, install.createDist(configuration));
+    }
+
+    @Test
+    public void testCreateDistIgnoresIncompleteSharedStore() throws Exception {
+        File sharedDistDir = new File(testDir, "sharedStore/someDistPath");
+        sharedDistDir.mkdirs();
+
+        InstallStamp stamp = new InstallStamp(sharedDistDir);
+        stamp.setDistributionUrl(WORKING_DISTRIBUTION_URI);
+        stamp.setMavenHome("maven-0.9");
+        stamp.write();
+
+        when(localDistribution.getSharedDistributionDirs()).thenReturn(Collections.singletonList(sharedDistDir));
+        createTestZip(zipDestination);
+
+        File homeDir = install.createDist(configuration);
+
+        Assert.assertEquals(mavenHomeDir, homeDir);
+        Assert.assertTrue(new File(homeDir, "bin/mvn").exists());
     }
 
-    private static void zipFile(String prefixPath, ZipOutputStream zout, File f) throws IOException {
-        InputStream fin = null;
+    @Test
+    public void testCreateDistUnzipsLocalArchiveInPlace() throws Exception {
+        File archive = new File(testDir, "checkout/maven/maven-0.9.zip");
+        createTestZip(archive);
+        configuration.setDistributionUris(Collections.singletonList(archive.toURI()));
+        configuration.setVerifyDownload(true);
+        configuration.setChecksumAlgorithm(Checksum.SHA256);
+        configuration.setDistributionChecksum(Checksum.SHA256.generate(new FileInputStream(archive)));
+        when(pathAssembler.getDistribution(configuration, archive.toURI())).thenReturn(localDistribution);
+
+        File homeDir = install.createDist(configuration);
+
+        Assert.assertEquals(mavenHomeDir, homeDir);
+        Assert.assertTrue(new File(homeDir, "bin/mvn").exists());
+        Assert.assertFalse(zipDestination.exists());
+        verify(download, never()).download(any(URI.class), any(File.class));
+    }
+
+    @Test
+    public void testCreateDistReinstallsLocalArchiveModifiedSinceInstall() throws Exception {
+        File archive = new File(testDir, "checkout/maven/maven-0.9.zip");
+        createTestZip(archive);
+        configuration.setDistributionUris(Collections.singletonList(archive.toURI()));
+        when(pathAssembler.getDistribution(configuration, archive.toURI())).thenReturn(localDistribution);
+        install.createDist(configuration);
+
+        File explodedZipDir = new File(testDir, "otherZip");
+        FileUtils.write(new File(explodedZipDir, "maven-0.9/bin/mvn"), "something else");
+        DistributionZips.zipTo(explodedZipDir, archive);
+        archive.setLastModified(System.currentTimeMillis() + 60000);
+
+        File homeDir = install.createDist(configuration);
+
+        Assert.assertEquals("something else", FileUtils.readFileToString(new File(homeDir, "bin/mvn")));
+    }
+
+    @Test
+    public void testCreateDistReusesInstallOfTouchedLocalArchive() throws Exception {
+        File archive = new File(testDir, "checkout/maven/maven-0.9.zip");
+        createTestZip(archive);
+        configuration.setDistributionUris(Collections.singletonList(archive.toURI()));
+        when(pathAssembler.getDistribution(configuration, archive.toURI())).thenReturn(localDistribution);
+        File homeDir = install.createDist(configuration);
+        File marker = new File(homeDir, "marker");
+        FileUtils.write(marker, "kept");
+        archive.setLastModified(System.currentTimeMillis() + 60000);
+
+        Assert.assertEquals(homeDir, install.createDist(configuration));
+        Assert.assertTrue(marker.exists());
+        Assert.assertTrue(new File(distributionDir, InstallStamp.STAMP_FILE_NAME).lastModified() >= archive.lastModified());
+    }
+
+    @Test
+    public void testCreateDistRejectsModifiedLocalArchive() throws Exception {
+        File archive = new File(testDir, "checkout/maven/maven-0.9.zip");
+        createTestZip(archive);
+        configuration.setDistributionUris(Collections.singletonList(archive.toURI()));
+        configuration.setVerifyDownload(true);
+        configuration.setChecksumAlgorithm(Checksum.SHA256);
+        configuration.setDistributionChecksum("0123456789abcdef");
+        when(pathAssembler.getDistribution(configuration, archive.toURI())).thenReturn(localDistribution);
 
         try {
-            ZipEntry ze = new ZipEntry(prefixPath + f.getName());
-            ze.setTime(f.lastModified());
-            zout.putNextEntry(ze);
-            fin = new FileInputStream(f);
-            byte[] buffer = new byte[4096];
-
-            for (int n; (n = fin.read(buffer)) > 0;) {
-                zout.write(buffer, 0, n);
+            install.createDist(configuration);
+            Assert.fail("Expected RuntimeException");
+        } catch (final RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("failed to verify"));
+        }
+
+        Assert.assertFalse(mavenHomeDir.exists());
+    }
+
+    @Test
+    public void testCreateDistReinstallsDistEvictedMeanwhile() throws Exception {
+        createTestZip(zipDestination);
+        install.createDist(configuration);
+
+        // another build evicts the install after its stamp was read
+        final File evictedDir = new File(testDir, "someDistPath.evicting");
+        when(localDistribution.getDistributionDir()).thenReturn(distributionDir).thenAnswer(new Answer<File>() {
+            @Override
+            public File answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                if (!evictedDir.exists()) {
+                    Assert.assertTrue(distributionDir.renameTo(evictedDir));
+                }
+
+                return distributionDir;
             }
+        });
 
-            zout.closeEntry();
-        } finally {
-            if (fin != null) {
-                fin.close();
+        File homeDir = install.createDist(configuration);
+
+        Assert.assertEquals(mavenHomeDir, homeDir);
+        Assert.assertTrue(new File(homeDir, "bin/mvn").exists());
+        Assert.assertTrue(InstallStamp.read(distributionDir).isValidFor(WORKING_DISTRIBUTION_URI));
+    }
+
+    @Test
+    public void testContentAddressedDistIsSharedBetweenUrls() throws Exception {
+        final URI mirrorUri = URI.create("http://mirror/maven-0.9.zip");
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                File downloadTarget = (File) invocationOnMock.getArguments()[1];
+                FileUtils.copyFile(zipDestination, downloadTarget);
+                return null;
             }
-        }
+        }).when(download).download(eq(mirrorUri), any(File.class));
+
+        createTestZip(zipDestination);
+        configuration.setZipBase(PathAssembler.MAVEN_USER_HOME_STRING);
+        configuration.setContentAddressed(true);
+        install = new Installer(download, new PathAssembler(new File(testDir, "userHome")));
+
+        File homeDir = install.createDist(configuration);
+        configuration.setDistributionUris(Collections.singletonList(mirrorUri));
+        File mirrorHomeDir = install.createDist(configuration);
+        File warmHomeDir = install.createDist(configuration);
 
+        Assert.assertEquals(homeDir.getCanonicalFile(), mirrorHomeDir.getCanonicalFile());
+        Assert.assertEquals(homeDir.getCanonicalFile(), warmHomeDir.getCanonicalFile());
+        Assert.assertEquals(PathAssembler.CONTENT_ADDRESSED_PATH, homeDir.getParentFile().getParentFile().getName());
+        Assert.assertTrue(new File(homeDir, "bin/mvn").exists());
+        verify(download, times(1)).download(eq(mirrorUri), any(File.class));
     }
 
-    private static void zipFolder(String prefixPath, ZipOutputStream zout, File f) throws IOException {
-        ZipEntry ze = new ZipEntry(prefixPath + f.getName() + '/');
-        ze.setTime(f.lastModified());
-        zout.putNextEntry(ze);
-        zout.closeEntry();
+    @Test
+    public void testContentAddressedDistRepairsIncompleteInstall() throws Exception {
+        createTestZip(zipDestination);
+        configuration.setZipBase(PathAssembler.MAVEN_USER_HOME_STRING);
+        configuration.setContentAddressed(true);
+        PathAssembler userHomeAssembler = new PathAssembler(new File(testDir, "userHome"));
+        install = new Installer(download, userHomeAssembler);
 
-        for (File file : f.listFiles()) {
-            zipFiles(prefixPath + f.getName(), zout, file);
-        }
+        // the remains of an unpack interrupted before writing its stamp
+        String sha256 = Checksum.SHA256.generate(new FileInputStream(zipDestination));
+        File contentDistDir = userHomeAssembler.getContentAddressedDistribution(configuration, WORKING_DISTRIBUTION_URI, sha256).getDistributionDir();
+        FileUtils.touch(new File(contentDistDir, "maven-0.9/partial"));
+
+        File homeDir = install.createDist(configuration);
+
+        Assert.assertTrue(new File(homeDir, "bin/mvn").exists());
+        Assert.assertFalse(new File(homeDir, "partial").exists());
+        Assert.assertTrue(InstallStamp.read(contentDistDir).isComplete());
     }
 
-    private static void zipFiles(String prefix, ZipOutputStream zout, File f) throws IOException {
-        String prefixPath = prefix + "/";
+    @Test
+    public void testOfflineFailsFastWithoutLocalZip() throws Exception {
+        configuration.setOffline(true);
 
-        if (prefixPath.startsWith("/")) {
-            prefixPath = prefixPath.substring(1);
+        try {
+            install.createDist(configuration);
+            Assert.fail("Expected RuntimeException");
+        } catch (final RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("offline mode"));
         }
 
-        if (f.isFile()) {
-            zipFile(prefixPath, zout, f);
-        } else {
-            zipFolder(prefixPath, zout, f);
-        }
+        verify(download, never()).download(any(URI.class), any(File.class));
     }
 
+    @Test
+    public void testOfflineUsesLocalZipEvenWithAlwaysDownload() throws Exception {
+        createTestZip(zipDestination);
+        configuration.setOffline(true);
+        configuration.setAlwaysDownload(true);
+
+        File homeDir = install.createDist(configuration);
+
+        Assert.assertEquals(mavenHomeDir, homeDir);
+        verify(download, never()).download(any(URI.class), any(File.class));
+    }
 }
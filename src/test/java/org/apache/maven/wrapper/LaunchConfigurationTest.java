@@ -0,0 +1,113 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LaunchConfigurationTest {
+    private File testDir = new File("target/test-files/LaunchConfigurationTest").getAbsoluteFile();
+    private File mavenHome = new File(testDir, "maven-0.9");
+    private File confFile = new File(mavenHome, LaunchConfiguration.M2_CONF_PATH);
+    private File cacheFile = new File(testDir, LaunchConfiguration.CACHE_FILE_NAME);
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteQuietly(testDir);
+        FileUtils.write(confFile, "main is org.apache.maven.cli.MavenCli from plexus.core\n"
+                + "\n"
+                + "set maven.conf default ${maven.home}/conf\n"
+                + "\n"
+                + "[plexus.core]\n"
+                + "load       ${maven.conf}/logging\n"
+                + "optionally ${maven.home}/lib/ext/*.jar\n"
+                + "load       ${maven.home}/lib/*.jar\n");
+        FileUtils.write(new File(mavenHome, "lib/maven-core.jar"), "jar");
+        FileUtils.write(new File(mavenHome, "lib/README.txt"), "readme");
+        new File(mavenHome, "conf/logging").mkdirs();
+        age(mavenHome);
+
+        System.setProperty("maven.home", mavenHome.getAbsolutePath());
+        System.clearProperty("maven.conf");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("maven.home");
+        FileUtils.deleteQuietly(testDir);
+    }
+
+    private void age(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (File child : files) {
+                age(child);
+            }
+        }
+
+        file.setLastModified(System.currentTimeMillis() - 60000);
+    }
+
+    @Test
+    public void parsesMavenConfiguration() throws Exception {
+        LaunchConfiguration configuration = LaunchConfiguration.parse(confFile);
+
+        assertNotNull(configuration);
+        assertEquals("org.apache.maven.cli.MavenCli", configuration.getMainClass());
+        assertEquals("plexus.core", configuration.getRealm());
+        assertEquals(Collections.singletonMap("maven.conf", new File(mavenHome, "conf").getAbsolutePath()), configuration.getDefaults());
+        assertEquals(Arrays.asList(new File(mavenHome, "conf/logging").toURI().toURL(), new File(mavenHome, "lib/maven-core.jar").toURI().toURL()),
+                configuration.getUrls());
+    }
+
+    @Test
+    public void loadsGlobMatchesInNameOrder() throws Exception {
+        FileUtils.write(new File(mavenHome, "lib/zinc.jar"), "jar");
+        FileUtils.write(new File(mavenHome, "lib/aether.jar"), "jar");
+
+        LaunchConfiguration configuration = LaunchConfiguration.parse(confFile);
+
+        assertEquals(Arrays.asList(new File(mavenHome, "conf/logging").toURI().toURL(), new File(mavenHome, "lib/aether.jar").toURI().toURL(),
+                new File(mavenHome, "lib/maven-core.jar").toURI().toURL(), new File(mavenHome, "lib/zinc.jar").toURI().toURL()),
+                configuration.getUrls());
+    }
+
+    @Test
+    public void readsCacheUntilInstallChanges() throws Exception {
+        assertNull(LaunchConfiguration.read(cacheFile, confFile));
+
+        LaunchConfiguration.parse(confFile).write(cacheFile);
+        LaunchConfiguration configuration = LaunchConfiguration.read(cacheFile, confFile);
+
+        assertNotNull(configuration);
+        assertEquals(LaunchConfiguration.parse(confFile).getUrls(), configuration.getUrls());
+        assertEquals("plexus.core", configuration.getRealm());
+
+        System.setProperty("maven.conf", new File(mavenHome, "conf").getAbsolutePath());
+        assertNull(LaunchConfiguration.read(cacheFile, confFile));
+        System.clearProperty("maven.conf");
+
+        FileUtils.write(new File(mavenHome, "lib/ext/extension.jar"), "jar");
+        assertNull(LaunchConfiguration.read(cacheFile, confFile));
+    }
+
+    @Test
+    public void leavesUnsupportedConfigurationToLauncher() throws Exception {
+        FileUtils.write(confFile, "[plexus.boot]\nimport org.slf4j from plexus.core\n", true);
+
+        assertNull(LaunchConfiguration.parse(confFile));
+
+        FileUtils.write(confFile, "main is org.apache.maven.cli.MavenCli from plexus.core\n[plexus.core]\nload ${missing}/lib/*.jar\n");
+
+        assertNull(LaunchConfiguration.parse(confFile));
+    }
+}
@@ -0,0 +1,36 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+
+import org.junit.Test;
+
+public class LauncherClassLoaderTest {
+    @Test
+    public void isRegisteredAsParallelCapable() throws Exception {
+        LauncherClassLoader loader = new LauncherClassLoader(new URL[0], null);
+
+        try {
+            // public since Java 9
+            Method isRegistered = ClassLoader.class.getMethod("isRegisteredAsParallelCapable");
+            assertTrue((Boolean) isRegistered.invoke(loader));
+        } catch (NoSuchMethodException e) {
+            // Java 7 and 8 lock a parallel capable loader per class name only
+            Method getClassLoadingLock;
+
+            try {
+                getClassLoadingLock = ClassLoader.class.getDeclaredMethod("getClassLoadingLock", String.class);
+            } catch (NoSuchMethodException java6) {
+                assumeTrue(false);
+                return;
+            }
+
+            getClassLoadingLock.setAccessible(true);
+            assertNotSame(loader, getClassLoadingLock.invoke(loader, "org.example.Main"));
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MavenDaemonTest {
+    private static final File TEST_DIR = new File("target/test-files/MavenDaemonTest").getAbsoluteFile();
+    private static final File MAVEN_HOME = new File(TEST_DIR, "maven-0.9");
+
+    private static MavenDaemonClient client;
+    private static DaemonRegistry registry;
+    private static ClassLoader contextClassLoader;
+
+    /**
+     * Stands in for the MavenCli of the distribution, loaded by the daemon from
+     * the lib directory. Each argument is an action.
+     */
+    public static class StubMavenCli {
+        public StubMavenCli(ClassWorld world) {
+        }
+
+        public int doMain(String[] args, String workingDirectory, PrintStream stdout, PrintStream stderr) throws IOException {
+            int exitCode = 0;
+
+            for (String arg : args) {
+                if (arg.equals("print")) {
+                    stdout.println("out " + workingDirectory);
+                    stderr.println("err");
+                } else if (arg.equals("echo-stdin")) {
+                    stdout.println("stdin " + new BufferedReader(new InputStreamReader(System.in, "UTF-8")).readLine());
+                } else if (arg.equals("wait-stdin")) {
+                    while (System.in.read() != -1) {
+                        // until the client closes its input
+                    }
+                } else if (arg.equals("property")) {
+                    stdout.println(System.getProperty("daemon.stub.forwarded"));
+                    System.setProperty("daemon.stub.leaked", "true");
+                } else if (arg.startsWith("exit=")) {
+                    exitCode = Integer.parseInt(arg.substring("exit=".length()));
+                }
+            }
+
+            return exitCode;
+        }
+    }
+
+    @BeforeClass
+    public static void startDaemon() throws Exception {
+        FileUtils.deleteQuietly(TEST_DIR);
+        File classworldsJar = new File(ClassWorld.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        FileUtils.copyFile(classworldsJar, new File(MAVEN_HOME, "boot/plexus-classworlds-2.5.2.jar"));
+        FileUtils.write(new File(MAVEN_HOME, "bin/m2.conf"), "main is " + StubMavenCli.class.getName() + " from plexus.core\n"
+                + "[plexus.core]\n"
+                + "load ${maven.home}/lib/*.jar\n");
+        writeJar(new File(MAVEN_HOME, "lib/maven-embedder.jar"), StubMavenCli.class);
+
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        client = new MavenDaemonClient(new File(TEST_DIR, "daemon"), new File(TEST_DIR, "maven-wrapper.jar"));
+        final File registryFile = client.registryFile(MAVEN_HOME);
+        final MavenDaemon daemon = new MavenDaemon(MAVEN_HOME);
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    daemon.serve(registryFile, 60000);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, "maven-daemon-test");
+        server.setDaemon(true);
+        server.start();
+
+        for (int i = 0; i < 100 && registry == null; i++) {
+            Thread.sleep(100);
+            registry = DaemonRegistry.read(registryFile);
+        }
+
+        assertNotNull(registry);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        System.clearProperty("maven.home");
+        System.clearProperty("classworlds.conf");
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+    }
+
+    private static void writeJar(File jarFile, Class<?> clazz) throws IOException {
+        String entryName = clazz.getName().replace('.', '/') + ".class";
+        jarFile.getParentFile().mkdirs();
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile));
+
+        try {
+            out.putNextEntry(new JarEntry(entryName));
+            InputStream in = clazz.getClassLoader().getResourceAsStream(entryName);
+
+            try {
+                IOUtils.copy(in, out);
+            } finally {
+                in.close();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Runs the build through the client with the given standard input,
+     * collecting its standard output and error.
+     */
+    private Integer execute(String stdin, ByteArrayOutputStream stdout, ByteArrayOutputStream stderr, String... args) throws Exception {
+        InputStream systemIn = System.in;
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+
+        try {
+            System.setIn(new ByteArrayInputStream(stdin.getBytes("UTF-8")));
+            System.setOut(new PrintStream(stdout, true, "UTF-8"));
+            System.setErr(new PrintStream(stderr, true, "UTF-8"));
+
+            return client.execute(args, MAVEN_HOME);
+        } finally {
+            System.setIn(systemIn);
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+        }
+    }
+
+    private Socket connect(DataOutputStream[] out, DataInputStream[] in) throws IOException {
+        Socket socket = new Socket("127.0.0.1", registry.getPort());
+        out[0] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        in[0] = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        return socket;
+    }
+
+    /**
+     * Reads the frames of a build until its exit code, collecting its standard
+     * output.
+     */
+    private int readExit(DataInputStream in, StringBuilder stdout) throws IOException {
+        while (true) {
+            DaemonProtocol.Frame frame = DaemonProtocol.read(in);
+
+            if (frame.type == DaemonProtocol.STDOUT) {
+                stdout.append(frame.text());
+            } else if (frame.type == DaemonProtocol.EXIT) {
+                return frame.intValue();
+            }
+        }
+    }
+
+    @Test
+    public void relaysExitCode() throws Exception {
+        assertEquals(Integer.valueOf(0), execute("", new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+        assertEquals(Integer.valueOf(3), execute("", new ByteArrayOutputStream(), new ByteArrayOutputStream(), "exit=3"));
+    }
+
+    @Test
+    public void forwardsStandardStreams() throws Exception {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        assertEquals(Integer.valueOf(0), execute("line from client\n", stdout, stderr, "print", "echo-stdin"));
+
+        String output = stdout.toString("UTF-8");
+        assertTrue(output, output.contains("out " + System.getProperty("user.dir")));
+        assertTrue(output, output.contains("stdin line from client"));
+        assertTrue(stderr.toString("UTF-8").contains("err"));
+    }
+
+    @Test
+    public void rejectsWrongToken() throws Exception {
+        DataOutputStream[] out = new DataOutputStream[1];
+        DataInputStream[] in = new DataInputStream[1];
+        Socket socket = connect(out, in);
+
+        try {
+            DaemonProtocol.write(out[0], DaemonProtocol.TOKEN, "not-" + registry.getToken());
+
+            try {
+                DaemonProtocol.read(in[0]);
+                fail("Expected the daemon to close the connection");
+            } catch (EOFException e) {
+                // rejected without a reply
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void buildsInProcessWhileBusy() throws Exception {
+        DataOutputStream[] out = new DataOutputStream[1];
+        DataInputStream[] in = new DataInputStream[1];
+        Socket socket = connect(out, in);
+
+        try {
+            DaemonProtocol.write(out[0], DaemonProtocol.TOKEN, registry.getToken());
+            DaemonProtocol.write(out[0], DaemonProtocol.ARGUMENT, "wait-stdin");
+            DaemonProtocol.write(out[0], DaemonProtocol.START, "");
+            assertEquals(DaemonProtocol.ACCEPTED, DaemonProtocol.read(in[0]).type);
+
+            assertNull(execute("", new ByteArrayOutputStream(), new ByteArrayOutputStream(), "exit=3"));
+
+            DaemonProtocol.write(out[0], DaemonProtocol.STDIN_CLOSED, "");
+            assertEquals(0, readExit(in[0], new StringBuilder()));
+        } finally {
+            socket.close();
+        }
+
+        assertEquals(Integer.valueOf(3), execute("", new ByteArrayOutputStream(), new ByteArrayOutputStream(), "exit=3"));
+    }
+
+    @Test
+    public void restoresSystemPropertiesAfterBuild() throws Exception {
+        DataOutputStream[] out = new DataOutputStream[1];
+        DataInputStream[] in = new DataInputStream[1];
+        Socket socket = connect(out, in);
+        StringBuilder stdout = new StringBuilder();
+
+        try {
+            DaemonProtocol.write(out[0], DaemonProtocol.TOKEN, registry.getToken());
+            DaemonProtocol.write(out[0], DaemonProtocol.PROPERTY, "daemon.stub.forwarded" + DaemonProtocol.PROPERTY_SEPARATOR + "from client");
+            DaemonProtocol.write(out[0], DaemonProtocol.ARGUMENT, "property");
+            DaemonProtocol.write(out[0], DaemonProtocol.START, "");
+            assertEquals(DaemonProtocol.ACCEPTED, DaemonProtocol.read(in[0]).type);
+            assertEquals(0, readExit(in[0], stdout));
+        } finally {
+            socket.close();
+        }
+
+        assertEquals("from client", stdout.toString().trim());
+        assertNull(System.getProperty("daemon.stub.forwarded"));
+        assertNull(System.getProperty("daemon.stub.leaked"));
+    }
+}
@@ -20,6 +20,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.times;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -29,8 +30,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
 import org.codehaus.plexus.configuration.PlexusConfiguration;
@@ -165,4 +168,79 @@ public class MavenWrapperMojoTest extends AbstractMojoTestCase {
 
         verify(artifact, times(1)).getFile();
     }
+
+    public void testMojoExecutionSkipsUnchangedFiles() throws Exception {
+        Artifact artifact = mock(Artifact.class);
+        when(artifact.getFile()).thenReturn(new File(getBasedir(), PLUGIN_TEST_ARTIFACT_LOCATION));
+
+        PluginDescriptor pluginDescriptor = mock(PluginDescriptor.class);
+        when(pluginDescriptor.getPluginArtifact()).thenReturn(artifact);
+
+        MavenWrapperMojo mojo = lookupMavenWrapperMojo();
+
+        mojo.setPlugin(pluginDescriptor);
+        mojo.setMavenVersion(MAVEN_RUNTIME_VERSION);
+        mojo.execute();
+
+        File[] generatedFiles = { new File(mojo.getWrapperScriptDirectory(), MavenWrapperMojo.SCRIPT_FILENAME_UNIX),
+                new File(mojo.getWrapperScriptDirectory(), MavenWrapperMojo.SCRIPT_FILENAME_WINDOWS),
+                new File(mojo.getWrapperDirectory(), MavenWrapperMojo.WRAPPER_PROPERTIES_FILE_NAME),
+                new File(mojo.getWrapperDirectory(), MavenWrapperMojo.WRAPPER_JAR_FILE_NAME) };
+        long lastModified = 1000000000000L;
+
+        for (File generatedFile : generatedFiles) {
+            assertTrue(generatedFile.setLastModified(lastModified));
+        }
+
+        mojo.execute();
+
+        for (File generatedFile : generatedFiles) {
+            assertEquals(generatedFile.getName(), lastModified, generatedFile.lastModified());
+        }
+
+        List<String> lines = FileUtils.readLines(generatedFiles[2], "ISO-8859-1");
+        assertEquals(Arrays.asList("#Maven download properties", "checksumAlgorithm=MD5",
+                "distributionUrl=" + getExpectedDistributionUrl().replace(":", "\\:"), "verifyDownload=true"), lines);
+    }
+
+    public void testMojoExecutionWritesJvmProfile() throws Exception {
+        Artifact artifact = mock(Artifact.class);
+        when(artifact.getFile()).thenReturn(new File(getBasedir(), PLUGIN_TEST_ARTIFACT_LOCATION));
+
+        PluginDescriptor pluginDescriptor = mock(PluginDescriptor.class);
+        when(pluginDescriptor.getPluginArtifact()).thenReturn(artifact);
+
+        MavenWrapperMojo mojo = lookupMavenWrapperMojo();
+
+        mojo.setPlugin(pluginDescriptor);
+        mojo.setMavenVersion(MAVEN_RUNTIME_VERSION);
+        mojo.setJvmProfile(MavenWrapperMojo.JVM_PROFILE_FAST_START);
+        mojo.execute();
+
+        assertEquals(MavenWrapperMojo.JVM_PROFILE_FAST_START, readProperties().getProperty(MavenWrapperMojo.JVM_PROFILE_PROPERTY));
+
+        mojo.setJvmProfile("fastest");
+
+        try {
+            mojo.execute();
+            fail("Expected an unsupported JVM profile to fail the build");
+        } catch (MojoExecutionException e) {
+            assertEquals("Unsupported JVM profile: fastest", e.getMessage());
+        }
+    }
+
+    public void testStorePropertiesKeepsCharactersOutsideOfLatin1() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(MavenWrapperMojo.DISTRIBUTION_URL_PROPERTY, "https://\u30df\u30e9\u30fc.example/maven/\u914d\u5e03/apache-maven-0.0.1-bin.zip");
+        props.setProperty(MavenWrapperMojo.VERIFY_DOWNLOAD_PROPERTY, "true");
+
+        byte[] content = MavenWrapperMojo.storeProperties(props);
+
+        Properties stored = new Properties();
+        stored.load(new ByteArrayInputStream(content));
+        assertEquals(props, stored);
+        assertEquals(Arrays.asList("#Maven download properties",
+                "distributionUrl=https\\://\\u30DF\\u30E9\\u30FC.example/maven/\\u914D\\u5E03/apache-maven-0.0.1-bin.zip",
+                "verifyDownload=true"), Arrays.asList(new String(content, "ISO-8859-1").split("\n")));
+    }
 }
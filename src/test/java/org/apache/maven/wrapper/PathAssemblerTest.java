@@ -17,14 +17,19 @@ package org.apache.maven.wrapper;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.wrapper.PathAssembler.LocalDistribution;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -69,6 +74,21 @@ public class PathAssemblerTest {
         assertThat(distributionDir.getParentFile(), equalTo(file(currentDirPath() + "/somePath/maven-0.9-bin")));
     }
 
+    @Test
+    public void distributionDirWithSharedBase() throws Exception {
+        configuration.setDistributionBase(PathAssembler.SHARED_STRING);
+        configuration.setSharedStorePaths(Arrays.asList(file("/opt/store1"), file("/opt/store2")));
+
+        LocalDistribution distribution = pathAssembler.getDistribution(configuration, TEST_DISTRIBUTION_URI);
+        File distributionDir = distribution.getDistributionDir();
+        assertThat(distributionDir.getParentFile(), equalTo(file(TEST_MAVEN_USER_HOME + "/somePath/maven-0.9-bin")));
+
+        List<File> sharedDistributionDirs = distribution.getSharedDistributionDirs();
+        assertEquals(2, sharedDistributionDirs.size());
+        assertThat(sharedDistributionDirs.get(0), equalTo(file("/opt/store1/somePath/maven-0.9-bin/" + distributionDir.getName())));
+        assertThat(sharedDistributionDirs.get(1), equalTo(file("/opt/store2/somePath/maven-0.9-bin/" + distributionDir.getName())));
+    }
+
     @Test
     public void distributionDirWithUnknownBase() throws Exception {
         configuration.setDistributionUris(Collections.singletonList(TEST_DISTRIBUTION_NO_TYPE_URI));
@@ -103,6 +123,28 @@ public class PathAssemblerTest {
         assertThat(dist.getParentFile().getParentFile(), equalTo(file(currentDirPath() + "/somePath/maven-1.0")));
     }
 
+    @Test
+    public void pinnedLocalArchiveIsSharedBetweenCheckouts() throws Exception {
+        File testDir = new File("target/test-files/PathAssemblerTest");
+        File archive = new File(testDir, "checkout/maven/maven-0.9-bin.zip");
+        File otherArchive = new File(testDir, "other-checkout/maven/maven-0.9-bin.zip");
+        FileUtils.write(archive, "archive");
+        FileUtils.write(otherArchive, "archive");
+
+        File distributionDir = pathAssembler.getDistribution(configuration, archive.toURI()).getDistributionDir();
+        assertFalse(distributionDir.equals(pathAssembler.getDistribution(configuration, otherArchive.toURI()).getDistributionDir()));
+
+        // replaced in place by an archive of the same size
+        FileUtils.write(archive, "ARCHIVE");
+        archive.setLastModified(archive.lastModified() + 60000);
+        assertFalse(distributionDir.equals(pathAssembler.getDistribution(configuration, archive.toURI()).getDistributionDir()));
+
+        configuration.setDistributionChecksum("0123456789abcdef");
+        distributionDir = pathAssembler.getDistribution(configuration, archive.toURI()).getDistributionDir();
+        assertEquals(distributionDir, pathAssembler.getDistribution(configuration, otherArchive.toURI()).getDistributionDir());
+        assertThat(distributionDir.getParentFile(), equalTo(file(TEST_MAVEN_USER_HOME + "/somePath/maven-0.9-bin")));
+    }
+
     private File file(String path) {
         return new File(path);
     }
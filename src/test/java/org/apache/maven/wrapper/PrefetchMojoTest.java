@@ -0,0 +1,92 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.net.URI;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.wrapper.PathAssembler.LocalDistribution;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrefetchMojoTest {
+    private File testDir = new File("target/test-files/PrefetchMojoTest").getAbsoluteFile();
+    private File wrapperDir = new File(testDir, "project/maven");
+    private File userHome = new File(testDir, "userHome");
+    private File distributionZip = new File(testDir, "server/maven-0.9.zip");
+    private PrefetchMojo mojo = new PrefetchMojo();
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteQuietly(testDir);
+        DistributionZips.writeDistribution(distributionZip);
+
+        PluginDescriptor pluginDescriptor = mock(PluginDescriptor.class);
+        when(pluginDescriptor.getVersion()).thenReturn("0.0.1");
+
+        mojo.setPlugin(pluginDescriptor);
+        mojo.setWrapperDirectory(wrapperDir.getPath());
+        mojo.setMavenUserHome(userHome.getPath());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(testDir);
+    }
+
+    @Test
+    public void installsTheConfiguredDistribution() throws Exception {
+        URI distributionUri = distributionZip.toURI();
+        FileUtils.write(new File(wrapperDir, MavenWrapperMojo.WRAPPER_PROPERTIES_FILE_NAME),
+                "distributionUrl=" + distributionUri.toString().replace(":", "\\:") + "\n");
+
+        mojo.execute();
+
+        File distDir = new PathAssembler(userHome).getDistribution(new WrapperConfiguration(), distributionUri).getDistributionDir();
+        assertTrue(new File(distDir, "maven/bin/mvn").isFile());
+        assertEquals("something", FileUtils.readFileToString(new File(distDir, "maven/bin/mvn"), "UTF-8"));
+    }
+
+    @Test
+    public void exportsALayerInstallingWithoutTheArchive() throws Exception {
+        URI distributionUri = distributionZip.toURI();
+        File propertiesFile = new File(wrapperDir, MavenWrapperMojo.WRAPPER_PROPERTIES_FILE_NAME);
+        FileUtils.write(propertiesFile, "distributionUrl=" + distributionUri.toString().replace(":", "\\:") + "\n");
+        File layerDir = new File(testDir, "layer");
+
+        mojo.setLayerDirectory(layerDir.getPath());
+        mojo.execute();
+
+        PathAssembler pathAssembler = new PathAssembler(layerDir);
+        LocalDistribution localDistribution = pathAssembler.getDistribution(new WrapperConfiguration(), distributionUri);
+        assertFalse(localDistribution.getZipFile().exists());
+        assertFalse(userHome.exists());
+
+        Downloader download = mock(Downloader.class);
+        WrapperConfiguration configuration = WrapperExecutor.forWrapperPropertiesFile(propertiesFile).getConfiguration();
+        File mavenHome = new Installer(download, pathAssembler).createDist(configuration);
+
+        assertEquals(new File(localDistribution.getDistributionDir(), "maven"), mavenHome);
+        verifyZeroInteractions(download);
+    }
+
+    @Test
+    public void failsWithoutWrapperProperties() throws Exception {
+        try {
+            mojo.execute();
+            fail();
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage().contains("run the wrapper goal first"));
+        }
+    }
+}
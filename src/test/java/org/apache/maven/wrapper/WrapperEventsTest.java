@@ -0,0 +1,99 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Test;
+
+public class WrapperEventsTest {
+    /**
+     * Loads the wrapper classes itself and hides {@code jdk.jfr} from them, as
+     * on a JVM without the flight recorder.
+     */
+    private static class NoJfrClassLoader extends URLClassLoader {
+        NoJfrClassLoader() {
+            super(new URL[] { WrapperEvents.class.getProtectionDomain().getCodeSource().getLocation() }, WrapperEvents.class.getClassLoader());
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith("jdk.jfr.")) {
+                throw new ClassNotFoundException(name);
+            }
+
+            if (!name.startsWith(WrapperEvents.class.getPackage().getName() + ".")) {
+                return super.loadClass(name, resolve);
+            }
+
+            Class<?> clazz = findLoadedClass(name);
+            return clazz != null ? clazz : findClass(name);
+        }
+    }
+
+    @Test
+    public void beginReturnsUsableEventForEveryType() {
+        for (WrapperEvents.Type type : WrapperEvents.Type.values()) {
+            WrapperEvent event = WrapperEvents.begin(type, "subject");
+
+            assertNotNull(type.name(), event);
+            event.setBytes(42);
+            event.commit();
+        }
+    }
+
+    @Test
+    public void beginReturnsFlightRecorderEventWithJfr() {
+        assumeTrue(isJfrAvailable());
+
+        for (WrapperEvents.Type type : WrapperEvents.Type.values()) {
+            WrapperEvent event = WrapperEvents.begin(type, "subject");
+
+            assertTrue(type.name(), event.getClass().getName().startsWith("org.apache.maven.wrapper.jfr."));
+            event.commit();
+        }
+    }
+
+    @Test
+    public void beginAcceptsMissingSubject() {
+        WrapperEvent event = WrapperEvents.begin(WrapperEvents.Type.DELETE_DIR, null);
+
+        assertNotNull(event);
+        event.commit();
+    }
+
+    @Test
+    public void beginReturnsNoOpEventWithoutJfr() throws Exception {
+        ClassLoader loader = new NoJfrClassLoader();
+        Class<?> eventsClass = loader.loadClass(WrapperEvents.class.getName());
+        Class<?> typeClass = loader.loadClass(WrapperEvents.Type.class.getName());
+        Class<?> eventClass = loader.loadClass(WrapperEvent.class.getName());
+        Method begin = eventsClass.getMethod("begin", typeClass, String.class);
+
+        for (Object type : typeClass.getEnumConstants()) {
+            Object event = begin.invoke(null, type, "subject");
+
+            assertNotNull(String.valueOf(type), event);
+            assertFalse(event.getClass().getName().startsWith("org.apache.maven.wrapper.jfr."));
+            eventClass.getMethod("setBytes", long.class).invoke(event, 42L);
+            eventClass.getMethod("commit").invoke(event);
+        }
+
+        assertEquals(loader, eventsClass.getClassLoader());
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+public class WrapperMetricsTest {
+    private File reportFile = new File("target/test-files/WrapperMetricsTest/metrics.json");
+
+    @After
+    public void tearDown() {
+        System.clearProperty(WrapperMetrics.METRICS_FILE_PROPERTY);
+        FileUtils.deleteQuietly(reportFile);
+    }
+
+    @Test
+    public void accumulatesRepeatedPhases() {
+        WrapperMetrics metrics = new WrapperMetrics();
+        metrics.add("download.bytes", 10);
+        metrics.add("download.bytes", 32);
+
+        assertEquals(42L, metrics.get("download.bytes"));
+        assertEquals(0L, metrics.get("unknown"));
+    }
+
+    @Test
+    public void accumulatesSubMillisecondPhases() {
+        WrapperMetrics metrics = new WrapperMetrics();
+
+        for (int i = 0; i < 1000; i++) {
+            metrics.addNanos("install.checksumMillis", 250000L);
+        }
+
+        assertEquals(250L, metrics.get("install.checksumMillis"));
+        assertEquals(250000000L, metrics.getNanos("install.checksumMillis"));
+        assertEquals("{\"install.checksumMillis\":250}", metrics.toJson().replaceAll("\\s", ""));
+    }
+
+    @Test
+    public void rendersMetricsAsJsonInRecordingOrder() {
+        WrapperMetrics metrics = new WrapperMetrics();
+        metrics.set("install.unzipMillis", 7);
+        metrics.set("bootstrap.classLoadMillis", 3);
+
+        String json = metrics.toJson().replaceAll("\\s", "");
+
+        assertEquals("{\"install.unzipMillis\":7,\"bootstrap.classLoadMillis\":3}", json);
+    }
+
+    @Test
+    public void writesReportOnlyWhenRequested() throws Exception {
+        WrapperMetrics metrics = new WrapperMetrics();
+        metrics.set("install.chmodMillis", 1);
+
+        assertFalse(metrics.isEnabled());
+        metrics.writeReportIfRequested();
+        assertFalse(reportFile.exists());
+
+        System.setProperty(WrapperMetrics.METRICS_FILE_PROPERTY, reportFile.getPath());
+        assertTrue(metrics.isEnabled());
+        metrics.writeReportIfRequested();
+
+        assertTrue(FileUtils.readFileToString(reportFile, "UTF-8").contains("\"install.chmodMillis\": 1"));
+    }
+}
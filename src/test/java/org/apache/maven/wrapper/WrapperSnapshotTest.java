@@ -0,0 +1,99 @@
+package org.apache.maven.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WrapperSnapshotTest {
+    private File testDir = new File("target/test-files/WrapperSnapshotTest").getAbsoluteFile();
+    private File wrapperJar = new File(testDir, "project/maven/maven-wrapper.jar");
+    private File wrapperProperties = new File(testDir, "project/maven/maven-wrapper.properties");
+    private File userProperties = new File(testDir, "userHome/maven.properties");
+    private File projectProperties = new File(testDir, "project/maven.properties");
+    private File snapshotFile;
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteQuietly(testDir);
+        FileUtils.write(wrapperJar, "jar");
+        FileUtils.write(wrapperProperties, "distributionUrl=http\\://server/maven-0.9.zip\n");
+        FileUtils.write(userProperties, "maven.wrapper.offline=true\n");
+        snapshotFile = WrapperSnapshot.snapshotFile(new File(testDir, "userHome"), wrapperProperties);
+
+        for (File file : new File[] { wrapperJar, wrapperProperties, userProperties }) {
+            file.setLastModified(System.currentTimeMillis() - 60000);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(testDir);
+    }
+
+    private WrapperSnapshot read() {
+        return WrapperSnapshot.read(snapshotFile, wrapperJar, wrapperProperties, userProperties, projectProperties);
+    }
+
+    @Test
+    public void readsWhatWasParsed() throws Exception {
+        assertNull(read());
+
+        WrapperSnapshot.parse(wrapperJar, wrapperProperties, userProperties, projectProperties, "1.0").write(snapshotFile);
+        WrapperSnapshot snapshot = read();
+
+        assertNotNull(snapshot);
+        assertEquals("http://server/maven-0.9.zip", snapshot.getWrapperProperties().getProperty("distributionUrl"));
+        assertEquals(Collections.singletonMap("maven.wrapper.offline", "true"), snapshot.getUserProperties());
+        assertTrue(snapshot.getProjectProperties().isEmpty());
+        assertEquals("1.0", snapshot.getWrapperVersion());
+    }
+
+    @Test
+    public void ignoresSnapshotOfChangedFiles() throws Exception {
+        WrapperSnapshot.parse(wrapperJar, wrapperProperties, userProperties, projectProperties, "1.0").write(snapshotFile);
+
+        FileUtils.write(projectProperties, "maven.wrapper.daemon=true\n");
+        assertNull(read());
+
+        projectProperties.delete();
+        assertNotNull(read());
+
+        wrapperProperties.setLastModified(wrapperProperties.lastModified() - 1000);
+        assertNull(read());
+    }
+
+    @Test
+    public void ignoresCorruptSnapshot() throws Exception {
+        WrapperSnapshot.parse(wrapperJar, wrapperProperties, userProperties, projectProperties, "1.0").write(snapshotFile);
+        RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");
+
+        try {
+            file.seek(file.length() - 12);
+            file.write(file.read() ^ 1);
+        } finally {
+            file.close();
+        }
+
+        assertNull(read());
+    }
+
+    @Test
+    public void doesNotSnapshotRecentlyModifiedFiles() throws Exception {
+        wrapperProperties.setLastModified(System.currentTimeMillis());
+
+        WrapperSnapshot.parse(wrapperJar, wrapperProperties, userProperties, projectProperties, "1.0").write(snapshotFile);
+
+        assertFalse(snapshotFile.exists());
+    }
+}
@@ -0,0 +1,61 @@
+package org.apache.maven.wrapper.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class CommandLineParserTest {
+    private final CommandLineParser parser = new CommandLineParser();
+
+    @Test
+    public void parsesOptionsSharingPrefixes() {
+        parser.option("o", "offline");
+        parser.option("of").hasArgument();
+        parser.option("D", "system-prop").hasArguments();
+
+        ParsedCommandLine commandLine = parser.parse("-offline", "-of", "file", "-Da=b", "--system-prop=c=d", "--D", "e", "goal");
+
+        assertTrue(commandLine.hasOption("o"));
+        assertEquals("file", commandLine.option("of").getValue());
+        assertEquals(Arrays.asList("a=b", "c=d", "e"), commandLine.option("system-prop").getValues());
+        assertEquals(Collections.singletonList("goal"), commandLine.getExtraArguments());
+    }
+
+    @Test
+    public void parsesCombinedShortOptions() {
+        parser.option("a");
+        parser.option("b");
+        parser.option("ab").hasArgument();
+
+        ParsedCommandLine commandLine = parser.parse("-ba");
+
+        assertTrue(commandLine.hasOption("a"));
+        assertTrue(commandLine.hasOption("b"));
+        assertFalse(commandLine.hasOption("ab"));
+    }
+
+    @Test
+    public void rejectsUnknownAndRepeatedOptions() {
+        parser.option("x").hasArgument();
+
+        try {
+            parser.parse("-yz");
+            fail();
+        } catch (CommandLineArgumentException e) {
+            assertEquals("Unknown command-line option '-y'.", e.getMessage());
+        }
+
+        try {
+            parser.parse("-x", "1", "--x=2");
+            fail();
+        } catch (CommandLineArgumentException e) {
+            assertEquals("Multiple arguments were provided for command-line option '--x'.", e.getMessage());
+        }
+    }
+}
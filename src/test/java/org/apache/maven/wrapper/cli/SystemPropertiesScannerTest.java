@@ -0,0 +1,56 @@
+package org.apache.maven.wrapper.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class SystemPropertiesScannerTest {
+    private final SystemPropertiesScanner scanner = new SystemPropertiesScanner("o", "offline");
+
+    private void assertScannedAsParsed(String... commandLine) {
+        CommandLineParser parser = new CommandLineParser();
+        SystemPropertiesCommandLineConverter converter = new SystemPropertiesCommandLineConverter();
+        converter.configure(parser);
+        parser.option("o", "offline");
+        parser.allowUnknownOptions();
+        parser.allowMixedSubcommandsAndOptions();
+        ParsedCommandLine parsed = parser.parse(commandLine);
+
+        assertTrue(Arrays.toString(commandLine), scanner.scan(commandLine));
+        assertEquals(Arrays.toString(commandLine), converter.convert(parsed), scanner.getSystemProperties());
+        assertEquals(Arrays.toString(commandLine), parsed.hasOption("o"), scanner.isFlagPresent());
+    }
+
+    @Test
+    public void scansAsParserWould() {
+        assertScannedAsParsed();
+        assertScannedAsParsed("clean", "install");
+        assertScannedAsParsed("-B", "-Dskip.tests=true", "clean", "-pl", "core", "-Dprofile", "install", "-Dskip.tests=false");
+        assertScannedAsParsed("--offline", "-T", "4", "--system-prop=a=b", "--D=c=d", "-D=e", "-Dsystem-prop=f");
+        assertScannedAsParsed("-offline", "-X=y", "--=z", "---", "-", "", "-=w");
+        assertScannedAsParsed("verify", "-o");
+        assertScannedAsParsed("-e", "--", "-Dignored=true", "-o", "-D");
+        assertScannedAsParsed("-Dmessage=first line\nsecond line", "deploy");
+    }
+
+    @Test
+    public void leavesAmbiguousFormsToParser() {
+        assertFalse(scanner.scan("-D", "a=b"));
+        assertFalse(scanner.scan("--system-prop", "a=b"));
+        assertFalse(scanner.scan("-D="));
+        assertFalse(scanner.scan("-ofoo"));
+        assertFalse(scanner.scan("--offline=true"));
+    }
+
+    @Test
+    public void scansWithoutSystemProperties() {
+        assertTrue(scanner.scan("clean", "install"));
+        assertEquals(Collections.emptyMap(), scanner.getSystemProperties());
+        assertFalse(scanner.isFlagPresent());
+    }
+}